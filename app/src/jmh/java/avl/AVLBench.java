@@ -0,0 +1,159 @@
+package avl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** In-memory AVL engine benchmarks. Keys are loaded once per trial so no
+ * file I/O is measured.
+ *
+ * The build benchmarks insert every key of the input into a fresh tree, so
+ * one op is one whole build; divide by the input size for per-key cost.
+ * The search benchmarks do one lookup per op against a prebuilt tree. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AVLBench {
+
+	@Param({"prefixes_small", "prefixes", "random", "sorted"})
+	public String input;
+
+	private String[] keys;
+	private String[] probes;
+	/* probes with "~" appended, built once so the miss benchmarks don't
+	 * time and allocate a concat per op */
+	private String[] missProbes;
+	private AVL tree;
+	private FrozenAVL frozen;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		keys = Inputs.load(input);
+		probes = Inputs.shuffled(keys, 7);
+		missProbes = new String[probes.length];
+		for (int i = 0; i < probes.length; i++) {
+			missProbes[i] = probes[i] + "~";
+		}
+		tree = new AVL();
+		for (String k : keys) {
+			tree.avlInsert(k);
+		}
+		frozen = tree.freeze();
+	}
+
+	@Benchmark
+	public AVL avlInsert() {
+		AVL a = new AVL();
+		for (String k : keys) {
+			a.avlInsert(k);
+		}
+		return a;
+	}
+
+	/** the counting map: same descent as avlInsert, but a duplicate bumps
+	 * its node's count instead of being dropped */
+	@Benchmark
+	public CountingAVL countingInsert() {
+		CountingAVL a = new CountingAVL();
+		for (String k : keys) {
+			a.add(k);
+		}
+		return a;
+	}
+
+	/** path-copying inserts: every insert allocates O(log n) new nodes */
+	@Benchmark
+	public PersistentAVL persistentInsert() {
+		PersistentAVL a = PersistentAVL.EMPTY;
+		for (String k : keys) {
+			a = a.insert(k);
+		}
+		return a;
+	}
+
+	/** sorted input degenerates into a list under bstInsert, so expect
+	 * this one to be quadratic on the "sorted" input */
+	@Benchmark
+	public AVL bstInsert() {
+		AVL a = new AVL();
+		for (String k : keys) {
+			a.bstInsert(k);
+		}
+		return a;
+	}
+
+	@Benchmark
+	public AVL.Node searchHit() {
+		String w = probes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return tree.search(w);
+	}
+
+	/** stream every word sharing the first two characters of a key */
+	@Benchmark
+	public int scanPrefix() {
+		String w = probes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		int count = 0;
+		for (Iterator<String> it = tree.scanPrefix(w.substring(0, Math.min(2, w.length()))); it.hasNext(); it.next()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public AVL.Node searchMiss() {
+		String w = missProbes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return tree.search(w);
+	}
+
+	/** searchHit against the frozen, pointer-free copy of the tree */
+	@Benchmark
+	public int frozenSearchHit() {
+		String w = probes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return frozen.search(w);
+	}
+
+	@Benchmark
+	public int frozenSearchMiss() {
+		String w = missProbes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return frozen.search(w);
+	}
+
+	/** one whole in-order walk of the tree per op, sequential */
+	@Benchmark
+	public long iterate() {
+		long chars = 0;
+		for (String w : tree) {
+			chars += w.length();
+		}
+		return chars;
+	}
+
+	/** the same walk as iterate through a parallel stream; compare the
+	 * two on a machine with several cores */
+	@Benchmark
+	public long parallelStream() {
+		return tree.stream().parallel().mapToLong(String::length).sum();
+	}
+}
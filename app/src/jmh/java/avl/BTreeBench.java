@@ -0,0 +1,90 @@
+package avl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** BPlusTree against AVL on the same keys, across node sizes. insert
+ * builds a whole tree per op; search does one lookup per op against a
+ * prebuilt tree. The avl benchmarks ignore fanout.
+ *
+ * For large sets pass a bigger input, e.g.
+ * -p input=random:100000000 -jvmArgsAppend -Xmx24g */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BTreeBench {
+
+	@Param({"prefixes", "random"})
+	public String input;
+
+	@Param({"16", "32", "64"})
+	public int fanout;
+
+	private String[] keys;
+	private String[] probes;
+	private AVL avl;
+	private BPlusTree btree;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		keys = Inputs.load(input);
+		probes = Inputs.shuffled(keys, 7);
+		avl = new AVL();
+		btree = new BPlusTree(fanout);
+		for (String k : keys) {
+			avl.avlInsert(k);
+			btree.add(k);
+		}
+	}
+
+	private String probe() {
+		String w = probes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return w;
+	}
+
+	@Benchmark
+	public AVL avlInsert() {
+		AVL a = new AVL();
+		for (String k : keys) {
+			a.avlInsert(k);
+		}
+		return a;
+	}
+
+	@Benchmark
+	public BPlusTree btreeInsert() {
+		BPlusTree b = new BPlusTree(fanout);
+		for (String k : keys) {
+			b.add(k);
+		}
+		return b;
+	}
+
+	@Benchmark
+	public boolean avlSearch() {
+		return avl.contains(probe());
+	}
+
+	@Benchmark
+	public boolean btreeSearch() {
+		return btree.search(probe());
+	}
+}
@@ -0,0 +1,67 @@
+package avl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** AVL.insertAll against a loop over avlInsert. Each op ingests the whole
+ * input into a fresh tree, batch keys at a time in input order, so the
+ * later batches land in a tree that is already large. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BatchInsertBench {
+
+	@Param({"prefixes", "random"})
+	public String input;
+
+	@Param({"256", "4096", "65536"})
+	public int batch;
+
+	private String[][] batches;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		String[] keys = Inputs.load(input);
+		batches = new String[(keys.length + batch - 1) / batch][];
+		for (int i = 0; i < batches.length; i++) {
+			batches[i] = Arrays.copyOfRange(keys, i * batch, Math.min(keys.length, (i + 1) * batch));
+		}
+	}
+
+	@Benchmark
+	public AVL avlInsert() {
+		AVL a = new AVL();
+		for (String[] b : batches) {
+			for (String k : b) {
+				a.avlInsert(k);
+			}
+		}
+		return a;
+	}
+
+	@Benchmark
+	public AVL insertAll() {
+		AVL a = new AVL();
+		for (String[] b : batches) {
+			a.insertAll(b);
+		}
+		return a;
+	}
+}
@@ -0,0 +1,99 @@
+package avl;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Shared-set throughput: ConcurrentAVL against AVL behind one global
+ * lock. The search benchmarks scale with the JMH thread count, e.g.
+ * -PjmhArgs='ConcurrentAVLBench.search -t 8'. The mixed groups run three
+ * readers against one writer inserting random synthetic keys. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConcurrentAVLBench {
+
+	private String[] keys;
+	private ConcurrentAVL concurrent;
+	private AVL locked;
+
+	@Setup(Level.Iteration)
+	public void setup() throws IOException {
+		keys = Inputs.load("prefixes");
+		concurrent = new ConcurrentAVL();
+		locked = new AVL();
+		for (String k : keys) {
+			concurrent.avlInsert(k);
+			locked.avlInsert(k);
+		}
+	}
+
+	private String probe() {
+		return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+	}
+
+	private static String fresh() {
+		return Long.toString(ThreadLocalRandom.current().nextLong(), 36);
+	}
+
+	@Benchmark
+	public boolean searchConcurrent() {
+		return concurrent.search(probe());
+	}
+
+	@Benchmark
+	public boolean searchLocked() {
+		synchronized (locked) {
+			return locked.search(probe()) != null;
+		}
+	}
+
+	@Benchmark
+	@Group("mixedConcurrent")
+	@GroupThreads(3)
+	public boolean mixedConcurrentRead() {
+		return concurrent.search(probe());
+	}
+
+	@Benchmark
+	@Group("mixedConcurrent")
+	@GroupThreads(1)
+	public boolean mixedConcurrentWrite() {
+		return concurrent.avlInsert(fresh());
+	}
+
+	@Benchmark
+	@Group("mixedLocked")
+	@GroupThreads(3)
+	public boolean mixedLockedRead() {
+		synchronized (locked) {
+			return locked.search(probe()) != null;
+		}
+	}
+
+	@Benchmark
+	@Group("mixedLocked")
+	@GroupThreads(1)
+	public void mixedLockedWrite() {
+		synchronized (locked) {
+			locked.avlInsert(fresh());
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package avl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The DedupSet engines side by side on the same in-memory keys, all
+ * through the String methods of the interface. build inserts every key
+ * into a fresh set (one op = one whole build); contains does one lookup
+ * per op against a prebuilt set. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineBench {
+
+	@Param({"prefixes", "random"})
+	public String input;
+
+	@Param({"avl", "compact", "offheap", "radix", "hash", "packed", "btree"})
+	public String engine;
+
+	private String[] keys;
+	private String[] probes;
+	private DedupSet set;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		keys = Inputs.load(input);
+		probes = Inputs.shuffled(keys, 7);
+		set = Unique.newSet(engine);
+		for (String k : keys) {
+			set.insert(k);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		set.close();
+	}
+
+	@Benchmark
+	public int build() {
+		DedupSet s = Unique.newSet(engine);
+		for (String k : keys) {
+			s.insert(k);
+		}
+		int n = s.size();
+		s.close();
+		return n;
+	}
+
+	@Benchmark
+	public boolean contains() {
+		String w = probes[next];
+		next = (next + 1 == probes.length) ? 0 : next + 1;
+		return set.contains(w);
+	}
+}
@@ -0,0 +1,73 @@
+package avl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/** Key sets shared by the benchmarks. Paths are relative to the app
+ * directory, which is where the jmh task runs. */
+final class Inputs {
+
+	/** number of keys in the synthetic inputs */
+	static final int SYNTHETIC = 200_000;
+
+	private Inputs() { }
+
+	/** load the keys named by source: "prefixes_small" or "prefixes" read
+	 * the bundled files, "random" is SYNTHETIC seeded random 5-letter
+	 * strings and "sorted" is SYNTHETIC zero-padded numbers in order.
+	 * "random:n" is n random 8-letter strings, for sizes past SYNTHETIC;
+	 * give the fork a heap to match, e.g. -jvmArgsAppend -Xmx24g for 10^8. */
+	static String[] load(String source) throws IOException {
+		switch (source) {
+			case "prefixes_small":
+			case "prefixes":
+				List<String> lines = Files.readAllLines(Paths.get(source + ".txt"), StandardCharsets.UTF_8);
+				return lines.toArray(new String[0]);
+			case "random":
+				return random(SYNTHETIC, 5, 42);
+			case "sorted":
+				String[] keys = new String[SYNTHETIC];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = String.format("%08d", i);
+				}
+				return keys;
+			default:
+				if (source.startsWith("random:")) {
+					return random(Integer.parseInt(source.substring(7)), 8, 42);
+				}
+				throw new IllegalArgumentException("unknown input " + source);
+		}
+	}
+
+	/** n random lowercase strings of length len from a fixed seed */
+	static String[] random(int n, int len, long seed) {
+		Random r = new Random(seed);
+		String[] keys = new String[n];
+		char[] buf = new char[len];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < len; j++) {
+				buf[j] = (char) ('a' + r.nextInt(26));
+			}
+			keys[i] = new String(buf);
+		}
+		return keys;
+	}
+
+	/** keys in a shuffled order, so lookups don't walk the tree in insertion order */
+	static String[] shuffled(String[] keys, long seed) {
+		String[] out = Arrays.copyOf(keys, keys.length);
+		Random r = new Random(seed);
+		for (int i = out.length - 1; i > 0; i--) {
+			int j = r.nextInt(i + 1);
+			String t = out[i];
+			out[i] = out[j];
+			out[j] = t;
+		}
+		return out;
+	}
+}
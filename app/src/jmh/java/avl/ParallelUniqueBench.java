@@ -0,0 +1,59 @@
+package avl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Thread scaling of the parallel and approx Unique modes. One op is one full pass
+ * over the input. Override the thread counts for bigger machines with
+ * -PjmhArgs='ParallelUniqueBench -p threads=1,2,4,8,16,32'. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParallelUniqueBench {
+
+	@Param({"prefixes", "random"})
+	public String input;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		file = UniqueBench.open(input);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (!input.startsWith("prefixes")) file.delete();
+	}
+
+	@Benchmark
+	public int parallelUnique() throws IOException {
+		return Unique.parallelUnique(file.toPath(), threads);
+	}
+
+	@Benchmark
+	public long approxUnique() throws IOException {
+		return Unique.approxUnique(file.toPath(), HyperLogLog.DEFAULT_PRECISION, threads).estimate();
+	}
+}
@@ -0,0 +1,70 @@
+package avl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Restarting from a snapshot against rebuilding from the text. One op is
+ * one whole tree: rebuild reads and inserts every line of the input as
+ * UniqueBench.avlUniqueMmap does, load reads the snapshot of the same
+ * tree, save writes it. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SnapshotBench {
+
+	@Param({"prefixes", "random"})
+	public String input;
+
+	private File file;
+	private Path snapshot;
+	private AVL tree;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		file = UniqueBench.open(input);
+		tree = Unique.avlOf(file.toPath());
+		snapshot = Files.createTempFile("snapshot-bench", ".snap");
+		tree.save(snapshot);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (!input.startsWith("prefixes")) file.delete();
+		Files.deleteIfExists(snapshot);
+	}
+
+	@Benchmark
+	public AVL rebuild() throws IOException {
+		return Unique.avlOf(file.toPath());
+	}
+
+	@Benchmark
+	public AVL load() throws IOException {
+		return AVL.load(snapshot);
+	}
+
+	@Benchmark
+	public void save() throws IOException {
+		tree.save(snapshot);
+	}
+}
@@ -0,0 +1,139 @@
+package avl;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end Unique benchmarks: one op is one full pass over the input
+ * file, reading included, exactly as Unique.main runs it.
+ * Synthetic inputs are written to a temp file during setup. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class UniqueBench {
+
+	/** avlUnique runs on every input */
+	@State(Scope.Benchmark)
+	public static class AvlInput {
+		@Param({"prefixes_small", "prefixes", "random", "sorted"})
+		public String input;
+		File file;
+		boolean temp;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			file = open(input);
+			temp = !file.getName().startsWith("prefixes");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (temp) file.delete();
+		}
+	}
+
+	/** the DedupSet engines run on every input too */
+	@State(Scope.Benchmark)
+	public static class EngineInput {
+		@Param({"prefixes_small", "prefixes", "random", "sorted"})
+		public String input;
+		@Param({"compact", "offheap", "radix", "hash", "packed", "btree"})
+		public String engine;
+		File file;
+		boolean temp;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			file = open(input);
+			temp = !file.getName().startsWith("prefixes");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (temp) file.delete();
+		}
+	}
+
+	/** naiveUnique is quadratic in the number of unique lines, so it only
+	 * gets the small file and a small random input */
+	@State(Scope.Benchmark)
+	public static class NaiveInput {
+		@Param({"prefixes_small", "random_small"})
+		public String input;
+		File file;
+		boolean temp;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			file = open(input);
+			temp = !file.getName().startsWith("prefixes");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (temp) file.delete();
+		}
+	}
+
+	static File open(String input) throws IOException {
+		if (input.startsWith("prefixes")) {
+			return new File(input + ".txt");
+		}
+		String[] keys = input.equals("random_small")
+			? Inputs.random(20_000, 5, 42)
+			: Inputs.load(input);
+		File f = Files.createTempFile("unique-bench", ".txt").toFile();
+		try (PrintWriter out = new PrintWriter(f)) {
+			for (String k : keys) {
+				out.println(k);
+			}
+		}
+		return f;
+	}
+
+	@Benchmark
+	public int avlUnique(AvlInput in) throws FileNotFoundException {
+		return Unique.avlUnique(new Scanner(in.file));
+	}
+
+	@Benchmark
+	public int avlUniqueMmap(AvlInput in) throws IOException {
+		return Unique.avlUnique(in.file.toPath());
+	}
+
+	@Benchmark
+	public int setUnique(EngineInput in) throws IOException {
+		return Unique.setUnique(in.engine, in.file.toPath());
+	}
+
+	@Benchmark
+	public int sortedUnique(AvlInput in) throws IOException {
+		return Unique.sortedUnique(in.file.toPath());
+	}
+
+	@Benchmark
+	public int naiveUnique(NaiveInput in) throws FileNotFoundException {
+		return Unique.naiveUnique(new Scanner(in.file));
+	}
+}
@@ -1,84 +1,170 @@
 package avl;
 
-public class AVL {
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class AVL implements DedupSet, Iterable<String> {
 
 	public Node root;
 
-	private int size;
+	/* depth and rotations of the current insert, kept for AVLMetrics */
+	private int opDepth, opRotations;
 
 	public int getSize() {
-		return size;
+		return size(root);
+	}
+
+	private static int size(Node n) {
+		return (n == null) ? 0 : n.size;
+	}
+
+	/** same as avlInsert */
+	public void insert(String w) {
+		avlInsert(w);
+	}
+
+	public boolean contains(String w) {
+		return search(w) != null;
+	}
+
+	public int size() {
+		return getSize();
 	}
 
 	/** find w in the tree. return the node containing w or
 	 * null if not found */
 	public Node search(String w) {
-		return search(root, w);
-	}
-	private Node search(Node n, String w) {
-		if (n == null) {
-			return null;
+		Node n = root;
+		int depth = 0;
+		while (n != null) {
+			depth++;
+			int c = w.compareTo(n.word);
+			if (c == 0) break;
+			n = (c < 0) ? n.left : n.right;
 		}
-		if (w.equals(n.word)) {
-			return n;
-		} else if (w.compareTo(n.word) < 0) {
-			return search(n.left, w);
-		} else {
-			return search(n.right, w);
+		if (AVLMetrics.ENABLED) {
+			AVLMetrics.descended(depth);
+			AVLMetrics.compared(depth);
 		}
+		return n;
 	}
 
 	/** insert w into the tree as a standard BST, ignoring balance */
 	public void bstInsert(String w) {
 		if (root == null) {
 			root = new Node(w);
-			size = 1;
 			return;
 		}
-		bstInsert(root, w);
+		attach(w);
 	}
 
-	/* 1 if 1 is greater, -1 if 2 is greater, 0 if they're the same */
-	private int strcmp(String s1, String s2){
-		int s = s1.compareTo(s2);
-		return (s != 0) ? (s / Math.abs(s)) : 0;
-	}
-
-	/* insert w into the tree rooted at n, ignoring balance
-	* pre: n is not null */
-	private void bstInsert(Node n, String w) {
-		switch(strcmp(w, n.word)){
-			case -1: /* w < node */
-				if(n.left != null) bstInsert(n.left, w);
-				else {
-					n.left = new Node(w, n);
-					size++;
-				}
-				break;
-			case 1: /* w > node */
-				if(n.right != null) bstInsert(n.right, w);
-				else {
-					n.right = new Node(w, n);
-					size++;
-				}
-				break;
-			default: break; /* no insertion, already exists */
+	/* walk down from the root and hang a new leaf holding w in the empty
+	 * slot where it belongs. returns the new leaf's parent, or null if w
+	 * is already in the tree.
+	 * pre: root is not null */
+	private Node attach(String w) {
+		Node n = root, p;
+		int c;
+		int depth = 0;
+		do {
+			p = n;
+			depth++;
+			c = w.compareTo(p.word);
+			if (c == 0) break; /* no insertion, already exists */
+			n = (c < 0) ? p.left : p.right;
+		} while (n != null);
+		if (AVLMetrics.ENABLED) {
+			AVLMetrics.descended(depth);
+			AVLMetrics.compared(depth);
+			opDepth = depth;
 		}
+		if (c == 0) return null;
+
+		if (c < 0) p.left = new Node(w, p);
+		else p.right = new Node(w, p);
+		for (Node a = p; a != null; a = a.parent) a.size++;
+		return p;
 	}
 
 	/** insert w into the tree, maintaining AVL balance
 	 *  precondition: the tree is AVL balanced and any prior insertions have been
 	*  performed by this method. */
 	public void avlInsert(String w) {
+		if (AVLMetrics.ENABLED) {
+			timedInsert(w);
+			return;
+		}
+		insertBalanced(w);
+	}
+
+	/* avlInsert proper. returns false if w was already present */
+	private boolean insertBalanced(String w) {
 		if (root == null) {
 			root = new Node(w);
-			size = 1;
-			return;
+			return true;
 		}
-		avlInsert(root, w);	
+		Node p = attach(w);
+		if (p == null) return false;
+		retrace(p);
+		return true;
+	}
+
+	/* avlInsert with its latency, depth and rotations recorded */
+	private void timedInsert(String w) {
+		AVLMetrics.InsertEvent e = new AVLMetrics.InsertEvent();
+		e.begin();
+		opDepth = 0;
+		opRotations = 0;
+		long t0 = System.nanoTime();
+		boolean added = insertBalanced(w);
+		AVLMetrics.inserted(t0, System.nanoTime(), opDepth, opRotations, added, e);
 	}
 
-	private void recalcHeight(Node n){
+	/** insert every word of batch and return how many were new. batch
+	 * need not be sorted and may hold duplicates; it is not modified.
+	 * rather than descending from the root once per key, a sorted copy of
+	 * the batch is merged in by splitting the tree on the batch median and
+	 * recursing on each half, so the top of the tree is walked once for
+	 * the whole batch and each affected subtree is rebalanced once, as it
+	 * is joined back. for k keys this costs O(k log(n/k + 1)) besides the
+	 * sort. */
+	public int insertAll(String[] batch) {
+		String[] b = batch.clone();
+		Arrays.sort(b);
+		int k = 0;
+		for (String w : b) {
+			if (k == 0 || !w.equals(b[k - 1])) b[k++] = w;
+		}
+		int before = getSize();
+		root = insertSorted(root, Arrays.asList(b), 0, k);
+		return getSize() - before;
+	}
+
+	/* merge the sorted distinct words[lo, hi) into the detached subtree t */
+	private Node insertSorted(Node t, List<String> words, int lo, int hi) {
+		if (lo >= hi) return t;
+		if (t == null) return build(words, lo, hi, null);
+		int mid = (lo + hi) >>> 1;
+		String w = words.get(mid);
+		Split s = split(t, w);
+		Node l = insertSorted(s.left, words, lo, mid);
+		Node r = insertSorted(s.right, words, mid + 1, hi);
+		return join(l, (s.mid != null) ? s.mid : new Node(w), r);
+	}
+
+	private static void recalcHeight(Node n){
 		int hright = -1, hleft = -1;
 		
 		if(n.left != null) hleft = n.left.height;
@@ -87,34 +173,31 @@ public class AVL {
 		n.height = Math.max(hright, hleft) + 1;
 	}
 
-	/* insert w into the tree, maintaining AVL balance
-	*  precondition: the tree is AVL balanced and n is not null 
-	*  returns true if 
-	*/
-	private void avlInsert(Node n, String w) {
-		switch(strcmp(w, n.word)){
-			case -1: /* w < node */
-				if(n.left != null) {
-					avlInsert(n.left, w);
-				}
-				else {
-					n.left = new Node(w, n);
-					size++;
-				}
-				break;
-			case 1: /* w > node */
-				if(n.right != null) {
-					avlInsert(n.right, w);
-				}
-				else {
-					n.right = new Node(w, n);
-					size++;
-				}
+	/* recompute both height and subtree size of n from its children */
+	private static void update(Node n) {
+		recalcHeight(n);
+		n.size = size(n.left) + 1 + size(n.right);
+	}
+
+	/* fix heights from n up toward the root after a leaf was added below n.
+	*  stops as soon as a subtree's height comes out unchanged, or after the
+	*  single (or double) rotation that brings the subtree back to the height
+	*  it had before the insertion - nothing above it can have changed. */
+	private void retrace(Node n) {
+		int steps = 0;
+		while (n != null) {
+			steps++;
+			int old = n.height;
+			recalcHeight(n);
+			int b = balance(n);
+			if (b > 1 || b < -1) {
+				rebalance(n);
 				break;
-			default: break; /* no insertion, already exists */
+			}
+			if (n.height == old) break;
+			n = n.parent;
 		}
-		recalcHeight(n);
-		rebalance(n);
+		if (AVLMetrics.ENABLED) AVLMetrics.retraced(steps);
 	}
 
 
@@ -127,6 +210,13 @@ public class AVL {
 		if(newrt.left != null) newrt.left.parent = x;
 		newrt.left = x;
 		x.parent = newrt;
+		if (AVLMetrics.ENABLED) {
+			AVLMetrics.leftRotated();
+			opRotations++;
+		}
+
+		update(x);
+		update(newrt);
 
 		/* adjust parent */
 		if(newrt.parent == null) root = newrt;
@@ -147,6 +237,13 @@ public class AVL {
 		if(newrt.right != null) newrt.right.parent = y;
 		newrt.right = y;
 		y.parent = newrt;
+		if (AVLMetrics.ENABLED) {
+			AVLMetrics.rightRotated();
+			opRotations++;
+		}
+
+		update(y);
+		update(newrt);
 
 		/* adjust parent */
 		if(newrt.parent == null) root = newrt;
@@ -158,7 +255,7 @@ public class AVL {
 		}
 	}
 
-	private int balance(Node n){
+	private static int balance(Node n){
 		int hright = -1, hleft = -1;
 		
 		if(n.left != null) hleft = n.left.height;
@@ -168,31 +265,631 @@ public class AVL {
 	}
 
 	/** rebalance a node N after a potentially AVL-violoting insertion.
+	 *  does at most one single or double rotation at n; rotations keep the
+	 *  heights of the nodes they move up to date.
 	 *  precondition: none of n's descendants violates the AVL property */
 	public void rebalance(Node n) {
 		int balance = balance(n);
+		if (AVLMetrics.ENABLED && (balance > 1 || balance < -1)) AVLMetrics.rebalanced();
 		if(balance > 1){
 			if((balance(n.right) * balance) < 0) rightRotate(n.right);
 			leftRotate(n);
-			n = n.parent; /* be in the same part of the tree */
 		}
 		else if (balance < -1) {
 			if((balance(n.left) * balance) < 0) leftRotate(n.left);
 			rightRotate(n);
-			n = n.parent;
 		}
+	}
+
+	/** build a tree holding the words of a sorted array in O(n) time, with
+	 * no comparisons beyond dropping adjacent duplicates. the result is
+	 * perfectly balanced, which is in particular AVL balanced.
+	 * throws IllegalArgumentException if words is not in sorted order. */
+	public static AVL fromSorted(String[] words) {
+		return fromSorted(Arrays.asList(words).iterator());
+	}
+
+	/** build a tree holding the words produced by a sorted iterator in
+	 * O(n) time. see fromSorted(String[]) */
+	public static AVL fromSorted(Iterator<String> words) {
+		List<String> distinct = new ArrayList<String>();
+		String prev = null;
+		int compared = 0;
+		while (words.hasNext()) {
+			String w = words.next();
+			if (prev != null) {
+				compared++;
+				int c = w.compareTo(prev);
+				if (c == 0) continue;
+				if (c < 0) throw new IllegalArgumentException("input is not sorted: " + w + " after " + prev);
+			}
+			distinct.add(w);
+			prev = w;
+		}
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(compared);
+		return fromSortedDistinct(distinct);
+	}
+
+	/* build a tree from words already known to be sorted and distinct,
+	 * with no comparisons at all */
+	static AVL fromSortedDistinct(List<String> words) {
+		AVL a = new AVL();
+		a.root = a.build(words, 0, words.size(), null);
+		return a;
+	}
+
+	/* build a perfectly balanced subtree from words[lo, hi) with parent p */
+	private Node build(List<String> words, int lo, int hi, Node p) {
+		if (lo >= hi) return null;
+		int mid = (lo + hi) >>> 1;
+		Node n = new Node(words.get(mid), p);
+		n.left = build(words, lo, mid, n);
+		n.right = build(words, mid + 1, hi, n);
+		update(n);
+		return n;
+	}
+
+	/** an immutable copy of the tree's words in a pointer-free layout
+	 * that searches faster than this tree; see FrozenAVL. O(n) */
+	public FrozenAVL freeze() {
+		return new FrozenAVL(toArray());
+	}
+
+	/** write the tree to f as a binary snapshot; see Snapshot */
+	public void save(Path f) throws IOException {
+		Snapshot.write(this, f);
+	}
+
+	/** reload a tree saved with save; see Snapshot */
+	public static AVL load(Path f) throws IOException {
+		return Snapshot.read(f);
+	}
+
+	/** the words in the tree, in sorted order */
+	public String[] toArray() {
+		String[] out = new String[getSize()];
+		fill(root, out, 0);
+		return out;
+	}
+
+	/* write the words of n's subtree into out starting at i, in order.
+	 * returns the index after the last word written */
+	private int fill(Node n, String[] out, int i) {
+		while (n != null) {
+			i = fill(n.left, out, i);
+			out[i++] = n.word;
+			n = n.right;
+		}
+		return i;
+	}
+
+	/** split this tree around w. returns two trees: the words less than w
+	 * and the words greater than w. w itself, if present, is in neither.
+	 * this tree is left empty. O(log n) */
+	public AVL[] split(String w) {
+		Split s = split(root, w);
+		AVL lt = new AVL(), gt = new AVL();
+		lt.root = s.left;
+		gt.root = s.right;
+		root = null;
+		return new AVL[] { lt, gt };
+	}
+
+	/** join two trees and a word into one AVL tree in O(log n) time.
+	 *  precondition: every word in left is less than w and every word in
+	 *  right is greater than w. left and right are left empty. */
+	public static AVL join(AVL left, String w, AVL right) {
+		AVL a = new AVL();
+		a.root = join(left.root, a.new Node(w), right.root);
+		left.clear();
+		right.clear();
+		return a;
+	}
+
+	/** the words in a or b, or both. a and b are left empty.
+	 * for sizes m <= n this takes O(m log(n/m + 1)) work; independent
+	 * subtrees are processed in parallel on the common fork-join pool. */
+	public static AVL union(AVL a, AVL b) {
+		return setOp(SetOp.UNION, a, b);
+	}
+
+	/** the words in both a and b. a and b are left empty. see union */
+	public static AVL intersection(AVL a, AVL b) {
+		return setOp(SetOp.INTERSECTION, a, b);
+	}
+
+	/** the words in a but not in b. a and b are left empty. see union */
+	public static AVL difference(AVL a, AVL b) {
+		return setOp(SetOp.DIFFERENCE, a, b);
+	}
+
+	private static AVL setOp(int op, AVL a, AVL b) {
+		AVL result = new AVL();
+		result.root = ForkJoinPool.commonPool().invoke(new SetOp(op, a.root, b.root));
+		a.clear();
+		b.clear();
+		return result;
+	}
+
+	private void clear() {
+		root = null;
+	}
+
+	/* the join-based operations below work on detached subtrees: the
+	 * subtree root's parent is null and nothing outside points at it.
+	 * they keep parent pointers and heights correct as they relink. */
+
+	private static int height(Node n) {
+		return (n == null) ? -1 : n.height;
+	}
+
+	/* make k the root of a detached subtree with children l and r */
+	private static Node link(Node l, Node k, Node r) {
+		k.left = l;
+		k.right = r;
+		k.parent = null;
+		if (l != null) l.parent = k;
+		if (r != null) r.parent = k;
+		update(k);
+		return k;
+	}
+
+	private static Node rotateLeft(Node x) {
+		Node y = x.right;
+		return link(link(x.left, x, y.left), y, y.right);
+	}
+
+	private static Node rotateRight(Node y) {
+		Node x = y.left;
+		return link(x.left, x, link(x.right, y, y.right));
+	}
+
+	/* join where l is more than one taller than r: walk down l's right
+	 * spine to a subtree no more than one taller than r, hang k there and
+	 * rotate on the way back up */
+	private static Node joinRight(Node l, Node k, Node r) {
+		Node c = l.right;
+		if (height(c) <= height(r) + 1) {
+			Node t = link(c, k, r);
+			if (height(t) <= height(l.left) + 1) return link(l.left, l, t);
+			return rotateLeft(link(l.left, l, rotateRight(t)));
+		}
+		Node t = joinRight(c, k, r);
+		Node t2 = link(l.left, l, t);
+		if (height(t) <= height(l.left) + 1) return t2;
+		return rotateLeft(t2);
+	}
+
+	/* mirror image of joinRight, for r more than one taller than l */
+	private static Node joinLeft(Node l, Node k, Node r) {
+		Node c = r.left;
+		if (height(c) <= height(l) + 1) {
+			Node t = link(l, k, c);
+			if (height(t) <= height(r.right) + 1) return link(t, r, r.right);
+			return rotateRight(link(rotateLeft(t), r, r.right));
+		}
+		Node t = joinLeft(l, k, c);
+		Node t2 = link(t, r, r.right);
+		if (height(t) <= height(r.right) + 1) return t2;
+		return rotateRight(t2);
+	}
+
+	/* a balanced subtree holding l, then k, then r */
+	private static Node join(Node l, Node k, Node r) {
+		if (height(l) > height(r) + 1) return joinRight(l, k, r);
+		if (height(r) > height(l) + 1) return joinLeft(l, k, r);
+		return link(l, k, r);
+	}
+
+	/* a balanced subtree holding l then r */
+	private static Node join2(Node l, Node r) {
+		if (l == null) return r;
+		Split s = splitLast(l);
+		return join(s.left, s.mid, r);
+	}
 
-		if(n.parent != null) rebalance(n.parent);
+	/* result of cutting a subtree in two around a word or node */
+	private static class Split {
+		Node left, mid, right;
+	}
+
+	/* split n's subtree into the words less than w, the node holding w
+	 * (null if absent) and the words greater than w */
+	private static Split split(Node n, String w) {
+		if (n == null) return new Split();
+		Node l = n.left, r = n.right;
+		if (l != null) l.parent = null;
+		if (r != null) r.parent = null;
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(1);
+		int c = w.compareTo(n.word);
+		if (c == 0) {
+			Split s = new Split();
+			s.left = l;
+			s.mid = n;
+			s.right = r;
+			return s;
+		}
+		if (c < 0) {
+			Split s = split(l, w);
+			s.right = join(s.right, n, r);
+			return s;
+		}
+		Split s = split(r, w);
+		s.left = join(l, n, s.left);
+		return s;
+	}
+
+	/* split off the largest node of n's subtree into mid; the rest goes in left */
+	private static Split splitLast(Node n) {
+		Node l = n.left, r = n.right;
+		if (l != null) l.parent = null;
+		if (r != null) r.parent = null;
+		if (r == null) {
+			Split s = new Split();
+			s.left = l;
+			s.mid = n;
+			return s;
+		}
+		Split s = splitLast(r);
+		s.left = join(l, n, s.left);
+		return s;
+	}
+
+	/* one union, intersection or difference of detached subtrees a and b:
+	 * split a around b's root, recurse on the two halves and join the
+	 * results */
+	private static class SetOp extends RecursiveTask<Node> {
+		private static final long serialVersionUID = 1L;
+
+		static final int UNION = 0, INTERSECTION = 1, DIFFERENCE = 2;
+
+		/* fork only when both sides have at least 2^FORK_HEIGHT nodes or
+		 * so; below that the task overhead outweighs the work */
+		static final int FORK_HEIGHT = 10;
+
+		final int op;
+		final Node a, b;
+
+		SetOp(int op, Node a, Node b) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+		}
+
+		protected Node compute() {
+			if (a == null) return (op == UNION) ? b : null;
+			if (b == null) return (op == INTERSECTION) ? null : a;
+
+			boolean fork = Math.min(a.height, b.height) >= FORK_HEIGHT;
+			Node bl = b.left, br = b.right;
+			if (bl != null) bl.parent = null;
+			if (br != null) br.parent = null;
+			Split s = split(a, b.word);
+
+			SetOp left = new SetOp(op, s.left, bl);
+			SetOp right = new SetOp(op, s.right, br);
+			Node l, r;
+			if (fork) {
+				left.fork();
+				r = right.compute();
+				l = left.join();
+			} else {
+				l = left.compute();
+				r = right.compute();
+			}
+
+			if (op == UNION || (op == INTERSECTION && s.mid != null)) return AVL.join(l, b, r);
+			return join2(l, r);
+		}
+	}
+
+	/** the number of words in the tree less than w. O(log n) */
+	public int rank(String w) {
+		return countBelow(w, false);
+	}
+
+	/** the k-th smallest word in the tree, counting from 0. O(log n)
+	 *  throws IndexOutOfBoundsException unless 0 <= k < getSize() */
+	public String select(int k) {
+		if (k < 0 || k >= getSize()) {
+			throw new IndexOutOfBoundsException("k = " + k + ", size = " + getSize());
+		}
+		Node n = root;
+		while (true) {
+			int l = size(n.left);
+			if (k == l) return n.word;
+			if (k < l) {
+				n = n.left;
+			} else {
+				k -= l + 1;
+				n = n.right;
+			}
+		}
+	}
+
+	/** the number of words w in the tree with lo <= w <= hi. O(log n) */
+	public int countRange(String lo, String hi) {
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(1);
+		if (lo.compareTo(hi) > 0) return 0;
+		return countBelow(hi, true) - countBelow(lo, false);
+	}
+
+	/* the number of words less than w, or at most w if inclusive */
+	private int countBelow(String w, boolean inclusive) {
+		int count = 0, compared = 0;
+		Node n = root;
+		while (n != null) {
+			compared++;
+			int c = w.compareTo(n.word);
+			if (c < 0 || (c == 0 && !inclusive)) {
+				n = n.left;
+			} else {
+				count += size(n.left) + 1;
+				if (c == 0) break;
+				n = n.right;
+			}
+		}
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(compared);
+		return count;
+	}
+
+	/** pass each word w with lo <= w <= hi to action, in sorted order.
+	 *  seeks to lo in O(log n), then steps from node to successor, so the
+	 *  whole scan costs O(log n + k) for k results and buffers nothing. */
+	public void scan(String lo, String hi, Consumer<String> action) {
+		for (Node n = lowerBound(lo); n != null && inRange(n.word, hi, null); n = successor(n)) {
+			action.accept(n.word);
+		}
+	}
+
+	/** a lazy iterator over the words w with lo <= w <= hi, in sorted
+	 *  order. the tree must not be modified while it is in use */
+	public Iterator<String> scan(String lo, String hi) {
+		return new Cursor(lowerBound(lo), hi, null);
+	}
+
+	/** pass each word starting with prefix to action, in sorted order.
+	 *  O(log n + k) for k results, like scan */
+	public void scanPrefix(String prefix, Consumer<String> action) {
+		for (Node n = lowerBound(prefix); n != null && inRange(n.word, null, prefix); n = successor(n)) {
+			action.accept(n.word);
+		}
+	}
+
+	/** a lazy iterator over the words starting with prefix, in sorted
+	 *  order. the tree must not be modified while it is in use */
+	public Iterator<String> scanPrefix(String prefix) {
+		return new Cursor(lowerBound(prefix), null, prefix);
+	}
+
+	/** an iterator over all the words in sorted order. it steps from node
+	 *  to successor through parent pointers, so it needs O(1) space. the
+	 *  tree must not be modified while it is in use */
+	public Iterator<String> iterator() {
+		return new Cursor(first(root), null, null);
+	}
+
+	/** a spliterator over all the words in sorted order. it splits at
+	 *  subtree roots, and subtree sizes make every part's size exact, so
+	 *  it is SIZED and SUBSIZED as well as SORTED. the tree must not be
+	 *  modified while it is in use */
+	public Spliterator<String> spliterator() {
+		return new Walker(null, root);
+	}
+
+	/** a sequential stream of the words in sorted order; call parallel()
+	 *  on it to spread the work over the common fork-join pool */
+	public Stream<String> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/* the leftmost node of n's subtree, or null if n is null */
+	private static Node first(Node n) {
+		if (n == null) return null;
+		while (n.left != null) n = n.left;
+		return n;
+	}
+
+	/* a spliterator over one node followed by a whole subtree, either of
+	 * which may be missing. the node is always the in-order predecessor
+	 * of the subtree's first node. splitting hands the node and the
+	 * subtree's left child to the prefix, and keeps the subtree's root
+	 * followed by its right child, so both halves have the same shape
+	 * again. once traversal starts it walks successors, counting down the
+	 * size it started with to know where the subtree ends. */
+	private static class Walker implements Spliterator<String> {
+		private Node head, sub;
+		private Node next; /* non-null once traversal has started */
+		private int remaining;
+
+		Walker(Node head, Node sub) {
+			this.head = head;
+			this.sub = sub;
+			remaining = ((head == null) ? 0 : 1) + size(sub);
+		}
+
+		public Spliterator<String> trySplit() {
+			if (next != null || sub == null || (head == null && sub.left == null)) return null;
+			Walker prefix = new Walker(head, sub.left);
+			head = sub;
+			sub = sub.right;
+			remaining -= prefix.remaining;
+			return prefix;
+		}
+
+		public boolean tryAdvance(Consumer<? super String> action) {
+			if (remaining == 0) return false;
+			if (next == null) next = (head != null) ? head : first(sub);
+			Node n = next;
+			if (--remaining > 0) next = successor(n);
+			action.accept(n.word);
+			return true;
+		}
+
+		public long estimateSize() {
+			return remaining;
+		}
+
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+		}
+
+		public Comparator<? super String> getComparator() {
+			return null; /* natural order */
+		}
+	}
+
+	/* the node holding the smallest word >= w, or null if there is none */
+	private Node lowerBound(String w) {
+		Node n = root, best = null;
+		int compared = 0;
+		while (n != null) {
+			compared++;
+			int c = w.compareTo(n.word);
+			if (c == 0) {
+				best = n;
+				break;
+			}
+			if (c < 0) {
+				best = n;
+				n = n.left;
+			} else {
+				n = n.right;
+			}
+		}
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(compared);
+		return best;
+	}
+
+	/* the in-order successor of n, found through parent pointers */
+	private static Node successor(Node n) {
+		if (n.right != null) {
+			n = n.right;
+			while (n.left != null) n = n.left;
+			return n;
+		}
+		while (n.parent != null && n.parent.right == n) n = n.parent;
+		return n.parent;
+	}
+
+	/* w <= hi (if hi is given) and w starts with prefix (if prefix is given) */
+	private static boolean inRange(String w, String hi, String prefix) {
+		if (AVLMetrics.ENABLED && hi != null) AVLMetrics.compared(1);
+		return (hi == null || w.compareTo(hi) <= 0) && (prefix == null || w.startsWith(prefix));
+	}
+
+	/* walks successors from a starting node until one falls out of range */
+	private static class Cursor implements Iterator<String> {
+		private Node next;
+		private final String hi, prefix;
+
+		Cursor(Node first, String hi, String prefix) {
+			this.hi = hi;
+			this.prefix = prefix;
+			next = clip(first);
+		}
+
+		private Node clip(Node n) {
+			return (n != null && inRange(n.word, hi, prefix)) ? n : null;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public String next() {
+			if (next == null) throw new NoSuchElementException();
+			String w = next.word;
+			next = clip(successor(next));
+			return w;
+		}
+	}
+
+	/** remove the word w from the tree, maintaining AVL balance. returns
+	 * false if w was not in the tree. O(log n) */
+	public boolean remove(String w) {
+		return remove(root, w);
+	}
+
+	/* remove w from the tree rooted at n. a node with two children takes
+	 * its successor's word, and the successor, which has no left child,
+	 * is unlinked instead; either way the node unlinked has at most one
+	 * child, which moves up into its place. */
+	private boolean remove(Node n, String w) {
+		int depth = 0;
+		while (n != null) {
+			depth++;
+			int c = w.compareTo(n.word);
+			if (c == 0) break;
+			n = (c < 0) ? n.left : n.right;
+		}
+		if (AVLMetrics.ENABLED) {
+			AVLMetrics.descended(depth);
+			AVLMetrics.compared(depth);
+		}
+		if (n == null) return false;
+		if (n.left != null && n.right != null) {
+			Node s = n.right;
+			while (s.left != null) s = s.left;
+			n.word = s.word;
+			n = s;
+		}
+		Node child = (n.left != null) ? n.left : n.right;
+		Node p = n.parent;
+		if (child != null) child.parent = p;
+		if (p == null) root = child;
+		else if (p.left == n) p.left = child;
+		else p.right = child;
+		for (Node a = p; a != null; a = a.parent) a.size--;
+		retraceRemove(p);
+		return true;
+	}
+
+	/* fix heights from n up toward the root after a node was unlinked
+	 * below n. unlike retrace, a rotation here can leave the subtree one
+	 * shorter than before, so the walk carries on above it; it stops only
+	 * once a subtree's height comes out unchanged. rebalance's single
+	 * rotation for a child with balance 0 is the one deletion needs. */
+	private void retraceRemove(Node n) {
+		int steps = 0;
+		while (n != null) {
+			steps++;
+			int old = n.height;
+			recalcHeight(n);
+			int b = balance(n);
+			if (b > 1 || b < -1) {
+				rebalance(n);
+				n = n.parent; /* the subtree's new root */
+			}
+			if (n.height == old) break;
+			n = n.parent;
+		}
+		if (AVLMetrics.ENABLED) AVLMetrics.retraced(steps);
 	}
 
-	/** remove the word w from the tree */
-	public void remove(String w) {
-		remove(root, w);
+	/** remove every word of sorted from the tree and return how many were
+	 * present. sorted must be in sorted order; duplicates are fine.
+	 * rather than descending from the root once per key, the keys are
+	 * built into a tree with fromSorted and taken away with difference,
+	 * which for k keys costs O(k log(n/k + 1)).
+	 * throws IllegalArgumentException if sorted is not in sorted order. */
+	public int removeAll(String[] sorted) {
+		int before = getSize();
+		root = difference(this, fromSorted(sorted)).root;
+		return before - getSize();
 	}
 
-	/* remove w from the tree rooted at n */
-	private void remove(Node n, String w) {
-		return; // (enhancement TODO - do the base assignment first)
+	/** remove every word w with lo <= w <= hi and return how many there
+	 * were. the tree is split around lo and hi and the outer pieces joined
+	 * back together, so this is O(log n) however many words go. */
+	public int removeRange(String lo, String hi) {
+		if (AVLMetrics.ENABLED) AVLMetrics.compared(1);
+		if (lo.compareTo(hi) > 0) return 0;
+		int before = getSize();
+		Split below = split(root, lo);
+		Split above = split(below.right, hi);
+		root = join2(below.left, above.right);
+		return before - getSize();
 	}
 
 	/** print a sideways representation of the tree - root at left,
@@ -219,6 +916,8 @@ public class AVL {
 		public Node left;
 		public Node right;
 		public int height;
+		/** number of nodes in the subtree rooted here, this one included */
+		public int size = 1;
 
 		public String toString() {
 			return word + "(" + height + ")";
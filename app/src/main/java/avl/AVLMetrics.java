@@ -0,0 +1,252 @@
+package avl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/** Counters for what AVL does on its hot paths: key comparisons, calls to
+ * leftRotate and rightRotate, rebalances, retrace steps and the depth of
+ * each descent, plus a histogram of avlInsert latency. Comparisons are
+ * counted wherever AVL compares two words: descents, split and so the
+ * set operations, insertAll and removeRange, rank and range queries,
+ * scans and fromSorted's order check. The sort insertAll runs on its
+ * batch before touching the tree is not counted. They are global,
+ * summed over every AVL in the process, and safe to update from several
+ * threads at once.
+ *
+ * Everything is off unless the JVM is started with -Davl.metrics=true.
+ * ENABLED is a static final constant, so when it is false the JIT folds
+ * every "if (AVLMetrics.ENABLED)" in AVL away and the instrumentation
+ * costs nothing.
+ *
+ * When enabled, the same numbers are also recorded as JFR events: an
+ * avl.Insert event, with its depth and rotations, for each avlInsert
+ * slower than 20us (the default threshold), and a periodic avl.Metrics
+ * event with the running totals. Start a recording
+ * with -XX:StartFlightRecording to collect them. Call snapshot() to read
+ * the counters in-process. */
+public final class AVLMetrics {
+
+	/** whether AVL records anything; set by the avl.metrics system property */
+	public static final boolean ENABLED = Boolean.getBoolean("avl.metrics");
+
+	/** number of latency histogram buckets. bucket i counts inserts that
+	 * took [2^i, 2^(i+1)) ns; bucket 0 also counts those under 1 ns */
+	public static final int BUCKETS = 40;
+
+	private static final LongAdder COMPARISONS = new LongAdder();
+	private static final LongAdder LEFT_ROTATIONS = new LongAdder();
+	private static final LongAdder RIGHT_ROTATIONS = new LongAdder();
+	private static final LongAdder REBALANCES = new LongAdder();
+	private static final LongAdder RETRACE_STEPS = new LongAdder();
+	private static final LongAdder DESCENTS = new LongAdder();
+	private static final LongAdder TOTAL_DEPTH = new LongAdder();
+	private static final LongAccumulator MAX_DEPTH = new LongAccumulator(Math::max, 0);
+	private static final AtomicLongArray LATENCY = new AtomicLongArray(BUCKETS);
+
+	static {
+		if (ENABLED) FlightRecorder.addPeriodicEvent(MetricsEvent.class, AVLMetrics::emitTotals);
+	}
+
+	/** comparisons of one word with another made by AVL's methods */
+	public final long comparisons;
+	/** calls to AVL.leftRotate */
+	public final long leftRotations;
+	/** calls to AVL.rightRotate */
+	public final long rightRotations;
+	/** rebalances that rotated, each a single or double rotation */
+	public final long rebalances;
+	/** nodes whose height was recomputed walking back up after a change */
+	public final long retraceSteps;
+	/** searches, inserts and removes that descended the tree */
+	public final long descents;
+	/** levels descended, summed over all descents */
+	public final long totalDepth;
+	/** the deepest single descent */
+	public final long maxDepth;
+	private final long[] latency;
+
+	private AVLMetrics() {
+		comparisons = COMPARISONS.sum();
+		leftRotations = LEFT_ROTATIONS.sum();
+		rightRotations = RIGHT_ROTATIONS.sum();
+		rebalances = REBALANCES.sum();
+		retraceSteps = RETRACE_STEPS.sum();
+		descents = DESCENTS.sum();
+		totalDepth = TOTAL_DEPTH.sum();
+		maxDepth = MAX_DEPTH.get();
+		latency = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) latency[i] = LATENCY.get(i);
+	}
+
+	/** the current totals. each counter is read separately, so a snapshot
+	 * taken while other threads are busy is not one atomic view */
+	public static AVLMetrics snapshot() {
+		return new AVLMetrics();
+	}
+
+	/** zero every counter */
+	public static void reset() {
+		COMPARISONS.reset();
+		LEFT_ROTATIONS.reset();
+		RIGHT_ROTATIONS.reset();
+		REBALANCES.reset();
+		RETRACE_STEPS.reset();
+		DESCENTS.reset();
+		TOTAL_DEPTH.reset();
+		MAX_DEPTH.reset();
+		for (int i = 0; i < BUCKETS; i++) LATENCY.set(i, 0);
+	}
+
+	/** the average depth of a descent */
+	public double meanDepth() {
+		return (descents == 0) ? 0 : (double) totalDepth / descents;
+	}
+
+	/** the number of avlInsert calls timed */
+	public long inserts() {
+		long n = 0;
+		for (long c : latency) n += c;
+		return n;
+	}
+
+	/** the insert latency histogram; see BUCKETS */
+	public long[] latencyHistogram() {
+		return latency.clone();
+	}
+
+	/** an upper bound on the q-th quantile of insert latency in ns, with
+	 * 0 <= q <= 1, to within the factor of two of a histogram bucket */
+	public long latencyQuantile(double q) {
+		long n = inserts();
+		if (n == 0) return 0;
+		long rank = (long) Math.ceil(q * n), seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += latency[i];
+			if (seen >= Math.max(rank, 1)) return 1L << (i + 1);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public String toString() {
+		return String.format("AVL metrics: %d descents, mean depth %.2f, max depth %d, %d comparisons%n"
+			+ "  %d left and %d right rotations in %d rebalances, %d retrace steps%n"
+			+ "  %d inserts timed: p50 < %d ns, p99 < %d ns, p99.9 < %d ns",
+			descents, meanDepth(), maxDepth, comparisons,
+			leftRotations, rightRotations, rebalances, retraceSteps,
+			inserts(), latencyQuantile(0.5), latencyQuantile(0.99), latencyQuantile(0.999));
+	}
+
+	/* recording, called from AVL only when ENABLED */
+
+	/* a descent from the root through depth nodes */
+	static void descended(int depth) {
+		DESCENTS.increment();
+		TOTAL_DEPTH.add(depth);
+		MAX_DEPTH.accumulate(depth);
+	}
+
+	/* n comparisons of one word with another */
+	static void compared(int n) {
+		COMPARISONS.add(n);
+	}
+
+	static void leftRotated() {
+		LEFT_ROTATIONS.increment();
+	}
+
+	static void rightRotated() {
+		RIGHT_ROTATIONS.increment();
+	}
+
+	static void rebalanced() {
+		REBALANCES.increment();
+	}
+
+	static void retraced(int steps) {
+		RETRACE_STEPS.add(steps);
+	}
+
+	/* an avlInsert that started at t0 and ended at t1 */
+	static void inserted(long t0, long t1, int depth, int rotations, boolean added, InsertEvent e) {
+		long ns = t1 - t0;
+		int b = (ns <= 1) ? 0 : Math.min(63 - Long.numberOfLeadingZeros(ns), BUCKETS - 1);
+		LATENCY.incrementAndGet(b);
+		e.end();
+		if (e.shouldCommit()) {
+			e.depth = depth;
+			e.rotations = rotations;
+			e.added = added;
+			e.commit();
+		}
+	}
+
+	private static void emitTotals() {
+		AVLMetrics m = snapshot();
+		MetricsEvent e = new MetricsEvent();
+		e.descents = m.descents;
+		e.meanDepth = m.meanDepth();
+		e.maxDepth = m.maxDepth;
+		e.comparisons = m.comparisons;
+		e.rotations = m.leftRotations + m.rightRotations;
+		e.rebalances = m.rebalances;
+		e.p99 = m.latencyQuantile(0.99);
+		e.commit();
+	}
+
+	@Name("avl.Insert")
+	@Label("AVL Insert")
+	@Category("AVL")
+	@Description("One AVL.avlInsert call")
+	@Threshold("20 us")
+	static class InsertEvent extends Event {
+		@Label("Depth")
+		int depth;
+
+		@Label("Rotations")
+		int rotations;
+
+		@Label("Added")
+		@Description("false if the word was already present")
+		boolean added;
+	}
+
+	@Name("avl.Metrics")
+	@Label("AVL Metrics")
+	@Category("AVL")
+	@Description("Running totals of the AVL counters")
+	@Period("1 s")
+	static class MetricsEvent extends Event {
+		@Label("Descents")
+		long descents;
+
+		@Label("Mean Depth")
+		double meanDepth;
+
+		@Label("Max Depth")
+		long maxDepth;
+
+		@Label("Comparisons")
+		long comparisons;
+
+		@Label("Rotations")
+		long rotations;
+
+		@Label("Rebalances")
+		long rebalances;
+
+		@Label("Insert p99")
+		@Timespan(Timespan.NANOSECONDS)
+		long p99;
+	}
+}
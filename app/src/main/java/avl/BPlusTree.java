@@ -0,0 +1,226 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** An in-memory B+-tree of strings, as an alternative to AVL with the
+ * same insert, contains and size contract. Each node holds up to fanout
+ * keys in sorted arrays, so a lookup visits about log_fanout(n) nodes
+ * instead of the log_2(n) of a binary tree, and within a node it binary
+ * searches a contiguous array rather than chasing pointers.
+ *
+ * Next to each key a node keeps its first four chars packed into a long
+ * by CharPrefix, and the binary search compares those first; the
+ * String itself is only read when the packed chars are equal.
+ *
+ * All words live in the leaves. Inner nodes hold separator copies: child
+ * i has the words below key i and child i + 1 those at or above it.
+ * Leaves are linked left to right, so a range scan descends once and
+ * then walks along the leaves. */
+public class BPlusTree implements DedupSet {
+
+	/** fanout used by the no-argument constructor */
+	public static final int DEFAULT_FANOUT = 32;
+
+	/* a node has room for one key past fanout, and splits when it uses it */
+	private static class Node {
+		int count;
+		final long[] pre;
+		final String[] keys;
+
+		Node(int fanout) {
+			pre = new long[fanout + 1];
+			keys = new String[fanout + 1];
+		}
+
+		/* index of w among keys, or -(insertion point) - 1 */
+		int find(String w, long p) {
+			int lo = 0, hi = count - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int c = Long.compareUnsigned(pre[mid], p);
+				if (c == 0) c = keys[mid].compareTo(w);
+				if (c < 0) lo = mid + 1;
+				else if (c > 0) hi = mid - 1;
+				else return mid;
+			}
+			return -(lo + 1);
+		}
+
+		/* shift keys [at, count) up one and put w at at */
+		void insertKey(int at, String w, long p) {
+			System.arraycopy(keys, at, keys, at + 1, count - at);
+			System.arraycopy(pre, at, pre, at + 1, count - at);
+			keys[at] = w;
+			pre[at] = p;
+			count++;
+		}
+	}
+
+	private static final class Leaf extends Node {
+		Leaf next;
+
+		Leaf(int fanout) {
+			super(fanout);
+		}
+	}
+
+	private static final class Inner extends Node {
+		final Node[] kids;
+
+		Inner(int fanout) {
+			super(fanout);
+			kids = new Node[fanout + 2];
+		}
+
+		/* the child to descend into for w */
+		Node child(String w, long p) {
+			int i = find(w, p);
+			return kids[(i >= 0) ? i + 1 : -i - 1];
+		}
+	}
+
+	private final int fanout;
+	private Node root;
+	private int size;
+
+	/* the separator and new right sibling from the last split, passed up
+	 * from insert to the parent */
+	private String upKey;
+	private long upPre;
+	private Node upNode;
+
+	public BPlusTree() {
+		this(DEFAULT_FANOUT);
+	}
+
+	/** an empty tree whose nodes hold up to fanout keys, at least 3 */
+	public BPlusTree(int fanout) {
+		if (fanout < 3) throw new IllegalArgumentException("fanout must be at least 3: " + fanout);
+		this.fanout = fanout;
+		root = new Leaf(fanout);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** the number of levels, 1 for a tree that is a single leaf */
+	public int height() {
+		int h = 1;
+		for (Node n = root; n instanceof Inner; n = ((Inner) n).kids[0]) h++;
+		return h;
+	}
+
+	public boolean contains(String w) {
+		return search(w);
+	}
+
+	/** return whether w is in the tree */
+	public boolean search(String w) {
+		long p = CharPrefix.pack(w);
+		Node n = root;
+		while (n instanceof Inner) n = ((Inner) n).child(w, p);
+		return n.find(w, p) >= 0;
+	}
+
+	/** same as add */
+	public void insert(String w) {
+		add(w);
+	}
+
+	/** insert w. returns false if it was already present */
+	public boolean add(String w) {
+		long p = CharPrefix.pack(w);
+		if (!insert(root, w, p)) return false;
+		size++;
+		if (upNode != null) {
+			/* the root split: grow a level */
+			Inner r = new Inner(fanout);
+			r.keys[0] = upKey;
+			r.pre[0] = upPre;
+			r.count = 1;
+			r.kids[0] = root;
+			r.kids[1] = upNode;
+			root = r;
+			upNode = null;
+		}
+		return true;
+	}
+
+	/* insert w below n. if n splits, the separator and new sibling are
+	 * left in upKey, upPre and upNode for the caller */
+	private boolean insert(Node n, String w, long p) {
+		int i = n.find(w, p);
+		if (n instanceof Leaf) {
+			if (i >= 0) return false;
+			n.insertKey(-i - 1, w, p);
+			if (n.count > fanout) splitLeaf((Leaf) n);
+			return true;
+		}
+		Inner in = (Inner) n;
+		int k = (i >= 0) ? i + 1 : -i - 1;
+		if (!insert(in.kids[k], w, p)) return false;
+		if (upNode != null) {
+			System.arraycopy(in.kids, k + 1, in.kids, k + 2, in.count - k);
+			in.kids[k + 1] = upNode;
+			in.insertKey(k, upKey, upPre);
+			upNode = null;
+			if (in.count > fanout) splitInner(in);
+		}
+		return true;
+	}
+
+	/* move the upper half of an overfull leaf into a new right sibling */
+	private void splitLeaf(Leaf l) {
+		Leaf r = new Leaf(fanout);
+		int keep = l.count / 2;
+		r.count = l.count - keep;
+		System.arraycopy(l.keys, keep, r.keys, 0, r.count);
+		System.arraycopy(l.pre, keep, r.pre, 0, r.count);
+		Arrays.fill(l.keys, keep, l.count, null);
+		l.count = keep;
+		r.next = l.next;
+		l.next = r;
+		upKey = r.keys[0];
+		upPre = r.pre[0];
+		upNode = r;
+	}
+
+	/* move the keys and children above the middle key of an overfull
+	 * inner node into a new right sibling; the middle key goes up */
+	private void splitInner(Inner in) {
+		Inner r = new Inner(fanout);
+		int mid = in.count / 2;
+		r.count = in.count - mid - 1;
+		System.arraycopy(in.keys, mid + 1, r.keys, 0, r.count);
+		System.arraycopy(in.pre, mid + 1, r.pre, 0, r.count);
+		System.arraycopy(in.kids, mid + 1, r.kids, 0, r.count + 1);
+		upKey = in.keys[mid];
+		upPre = in.pre[mid];
+		upNode = r;
+		Arrays.fill(in.keys, mid, in.count, null);
+		Arrays.fill(in.kids, mid + 1, in.count + 1, null);
+		in.count = mid;
+	}
+
+	/** pass each word w with lo <= w <= hi to action, in sorted order.
+	 * descends once to lo's leaf, then follows the leaf links */
+	public void scan(String lo, String hi, Consumer<String> action) {
+		long p = CharPrefix.pack(lo);
+		Node n = root;
+		while (n instanceof Inner) n = ((Inner) n).child(lo, p);
+		int i = n.find(lo, p);
+		if (i < 0) i = -i - 1;
+		for (Leaf l = (Leaf) n; l != null; l = l.next, i = 0) {
+			for (; i < l.count; i++) {
+				if (l.keys[i].compareTo(hi) > 0) return;
+				action.accept(l.keys[i]);
+			}
+		}
+	}
+}
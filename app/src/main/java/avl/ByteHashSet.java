@@ -0,0 +1,204 @@
+package avl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** An unordered set of byte strings in an open-addressing hash table, for
+ * when only the count of distinct lines matters and the ordering a tree
+ * pays for on every comparison is wasted.
+ *
+ * Keys are stored back to back as raw UTF-8 bytes in one arena, the same
+ * way CompactAVL stores them, so inserting a line creates no String and no
+ * per-key object. The table itself is two int arrays: the key index in
+ * each slot and that key's hash, kept so probing and resizing never have
+ * to rehash or touch the arena unless the hashes are equal.
+ *
+ * Collisions are resolved by linear probing with Robin Hood placement: a
+ * new key takes the slot of any resident that is closer to its home slot,
+ * which keeps probe lengths short and even at high load, and lets a miss
+ * stop as soon as it meets a resident nearer home than the probe. */
+public class ByteHashSet implements DedupSet {
+
+	private static final int EMPTY = -1;
+
+	/* grow when size reaches 7/8 of the table; Robin Hood keeps probe
+	 * sequences short at that load */
+	private static final int LOAD_NUM = 7, LOAD_SHIFT = 3;
+
+	private int[] slotKey;
+	private int[] slotHash;
+	private int mask;
+
+	/* key i is arena[keyStart[i], keyStart[i + 1]), as in CompactAVL */
+	private int[] keyStart;
+	private byte[] arena;
+
+	private int size;
+
+	public ByteHashSet() {
+		this(16);
+	}
+
+	/** an empty set with room for capacity keys before growing */
+	public ByteHashSet(int capacity) {
+		int slots = Integer.highestOneBit(Math.max((capacity << LOAD_SHIFT) / LOAD_NUM, 2) - 1) << 1;
+		slotKey = new int[slots];
+		Arrays.fill(slotKey, EMPTY);
+		slotHash = new int[slots];
+		mask = slots - 1;
+		keyStart = new int[Math.max(capacity, 1) + 1];
+		arena = new byte[Math.max(capacity, 1) * 8];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** bytes held by the arrays backing this set, including unused capacity */
+	public long footprint() {
+		return 8L * slotKey.length + 4L * keyStart.length + arena.length;
+	}
+
+	public void insert(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		add(b, 0, b.length);
+	}
+
+	public void insert(ByteBuffer buf, int off, int len) {
+		int at = reserve(len);
+		buf.get(off, arena, at, len);
+		addTail(len);
+	}
+
+	/** add the UTF-8 key b[off, off + len). returns false if it was
+	 * already present */
+	public boolean add(byte[] b, int off, int len) {
+		int at = reserve(len);
+		System.arraycopy(b, off, arena, at, len);
+		return addTail(len);
+	}
+
+	public boolean contains(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		return contains(b, 0, b.length);
+	}
+
+	/** return whether the UTF-8 key b[off, off + len) is present */
+	public boolean contains(byte[] b, int off, int len) {
+		int h = hash(b, off, len);
+		int pos = h & mask;
+		for (int dist = 0; ; dist++) {
+			int k = slotKey[pos];
+			if (k == EMPTY) return false;
+			int kh = slotHash[pos];
+			if (kh == h && Arrays.equals(arena, keyStart[k], keyStart[k + 1], b, off, off + len)) {
+				return true;
+			}
+			if (((pos - kh) & mask) < dist) return false; /* it would have displaced this one */
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	/* make room for a len-byte key just past the last stored key and
+	 * return where it starts */
+	private int reserve(int len) {
+		int at = keyStart[size];
+		if (at + len > arena.length) {
+			arena = Arrays.copyOf(arena, Math.max(at + len, arena.length + (arena.length >> 1)));
+		}
+		return at;
+	}
+
+	/* the candidate key has been copied to the free end of the arena. keep
+	 * it as key number size unless it is already present, in which case the
+	 * next candidate simply overwrites it */
+	private boolean addTail(int len) {
+		int k0 = keyStart[size], k1 = k0 + len;
+		int h = hash(arena, k0, len);
+		int pos = h & mask;
+		int dist = 0;
+		for (;;) {
+			int k = slotKey[pos];
+			if (k == EMPTY) break;
+			int kh = slotHash[pos];
+			if (kh == h && Arrays.equals(arena, keyStart[k], keyStart[k + 1], arena, k0, k1)) {
+				return false;
+			}
+			if (((pos - kh) & mask) < dist) break;
+			pos = (pos + 1) & mask;
+			dist++;
+		}
+		if (size + 1 == keyStart.length) {
+			keyStart = Arrays.copyOf(keyStart, keyStart.length + (keyStart.length >> 1) + 1);
+		}
+		keyStart[size + 1] = k1;
+		place(size, h, pos, dist);
+		if (++size > (slotKey.length >>> LOAD_SHIFT) * LOAD_NUM) resize();
+		return true;
+	}
+
+	/* put key k with hash h at pos, dist slots from its home, pushing each
+	 * resident that is nearer its own home one step further along */
+	private void place(int k, int h, int pos, int dist) {
+		for (;;) {
+			int r = slotKey[pos];
+			if (r == EMPTY) {
+				slotKey[pos] = k;
+				slotHash[pos] = h;
+				return;
+			}
+			int rh = slotHash[pos];
+			int rdist = (pos - rh) & mask;
+			if (rdist < dist) {
+				slotKey[pos] = k;
+				slotHash[pos] = h;
+				k = r;
+				h = rh;
+				dist = rdist;
+			}
+			pos = (pos + 1) & mask;
+			dist++;
+		}
+	}
+
+	private void resize() {
+		int[] oldKey = slotKey, oldHash = slotHash;
+		slotKey = new int[2 * oldKey.length];
+		Arrays.fill(slotKey, EMPTY);
+		slotHash = new int[slotKey.length];
+		mask = slotKey.length - 1;
+		for (int i = 0; i < oldKey.length; i++) {
+			if (oldKey[i] != EMPTY) place(oldKey[i], oldHash[i], oldHash[i] & mask, 0);
+		}
+	}
+
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/* hash b[off, off + len) into a slot hash */
+	static int hash(byte[] b, int off, int len) {
+		return (int) hash64(b, off, len);
+	}
+
+	/** a 64-bit hash of b[off, off + len), taken 8 bytes at a time and
+	 * finished with the SplitMix64 mixer so every output bit depends on
+	 * every input byte. HyperLogLog uses it too */
+	static long hash64(byte[] b, int off, int len) {
+		long h = 0x9E3779B97F4A7C15L ^ len;
+		int i = off, end = off + len;
+		for (; i + 8 <= end; i += 8) {
+			h = Long.rotateLeft(h ^ (long) LONG.get(b, i), 29) * 0xBF58476D1CE4E5B9L;
+		}
+		long t = 0;
+		for (int s = 0; i < end; i++, s += 8) {
+			t |= (b[i] & 0xffL) << s;
+		}
+		h ^= t;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+}
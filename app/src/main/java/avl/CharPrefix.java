@@ -0,0 +1,21 @@
+package avl;
+
+/** The first four chars of a string packed into a long, for the engines
+ * that compare a cheap prefix before touching the string itself
+ * (FrozenAVL and BPlusTree). */
+final class CharPrefix {
+
+	private CharPrefix() { }
+
+	/** the first four chars of w, big-endian, padded with 0. unsigned long
+	 * order agrees with String order except that it can't tell a short
+	 * word from one continuing with \0 chars, so ties must be resolved by
+	 * comparing the strings */
+	static long pack(String w) {
+		long p = 0;
+		for (int j = 0; j < 4; j++) {
+			p = (p << 16) | ((j < w.length()) ? w.charAt(j) : 0);
+		}
+		return p;
+	}
+}
@@ -0,0 +1,140 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** An AVL tree of strings laid out as parallel arrays instead of Node
+ * objects. A node is an int index; its links live in left/right/parent,
+ * its height in a byte, and its key as UTF-8 bytes in a single growable
+ * arena. Keys are ordered by unsigned byte comparison of their UTF-8
+ * encoding, which agrees with String.compareTo for ASCII.
+ *
+ * Per key this costs 17 bytes plus the key's UTF-8 length, against roughly
+ * 80 bytes plus the key for an AVL.Node with its String. */
+public class CompactAVL extends IndexedAVL implements DedupSet {
+
+	/* node i's key is arena[keyStart[i], keyStart[i + 1]). nodes are
+	 * created in the same order their keys are appended, so the next
+	 * node's start doubles as this node's end. */
+	private int[] keyStart;
+	private byte[] arena;
+
+	/* the key being searched for or inserted: probe[probeOff, probeEnd) */
+	private byte[] probe;
+	private int probeOff, probeEnd;
+
+	public CompactAVL() {
+		this(16);
+	}
+
+	/** an empty tree with room for capacity nodes before growing */
+	public CompactAVL(int capacity) {
+		super(capacity);
+		keyStart = new int[capacity() + 1];
+		arena = new byte[capacity() * 8];
+	}
+
+	public int getSize() {
+		return nodes;
+	}
+
+	public int size() {
+		return nodes;
+	}
+
+	/** same as avlInsert */
+	public void insert(String w) {
+		avlInsert(w);
+	}
+
+	/** same as avlInsert */
+	public void insert(ByteBuffer buf, int off, int len) {
+		avlInsert(buf, off, len);
+	}
+
+	public boolean contains(String w) {
+		return search(w) != NIL;
+	}
+
+	/** the key stored at node n */
+	public String key(int n) {
+		return new String(arena, keyStart[n], keyStart[n + 1] - keyStart[n], StandardCharsets.UTF_8);
+	}
+
+	/** bytes held by the arrays backing this tree, including unused capacity */
+	public long footprint() {
+		return 13L * capacity() + 4L * keyStart.length + arena.length;
+	}
+
+	/** find w in the tree. return the node containing w or NIL if not found */
+	public int search(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		return search(b, 0, b.length);
+	}
+
+	/** find the UTF-8 key b[off, off + len) in the tree. return its node or NIL */
+	public int search(byte[] b, int off, int len) {
+		probe = b;
+		probeOff = off;
+		probeEnd = off + len;
+		int n = findProbe();
+		probe = null;
+		return n;
+	}
+
+	/** insert w into the tree, maintaining AVL balance */
+	public void avlInsert(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		avlInsert(b, 0, b.length);
+	}
+
+	/** insert the UTF-8 key b[off, off + len), maintaining AVL balance */
+	public void avlInsert(byte[] b, int off, int len) {
+		int at = reserve(len);
+		System.arraycopy(b, off, arena, at, len);
+		insertTail(at, len);
+	}
+
+	/** insert the UTF-8 key buf[off, off + len), maintaining AVL balance.
+	 * this is the shape LineReader hands lines over in */
+	public void avlInsert(ByteBuffer buf, int off, int len) {
+		int at = reserve(len);
+		buf.get(off, arena, at, len);
+		insertTail(at, len);
+	}
+
+	/* make room for a len-byte key just past the last stored key and
+	 * return where it starts */
+	private int reserve(int len) {
+		int at = keyStart[nodes];
+		if (at + len > arena.length) {
+			arena = Arrays.copyOf(arena, Math.max(at + len, arena.length + (arena.length >> 1)));
+		}
+		return at;
+	}
+
+	/* the candidate key has been copied to the free end of the arena. link
+	 * it in as a new node unless it is already present; if it is, the copy
+	 * is simply overwritten by the next candidate. */
+	private void insertTail(int at, int len) {
+		probe = arena;
+		probeOff = at;
+		probeEnd = at + len;
+		insertProbe();
+		probe = null;
+	}
+
+	int compareProbe(int n) {
+		return Arrays.compareUnsigned(probe, probeOff, probeEnd, arena, keyStart[n], keyStart[n + 1]);
+	}
+
+	/* the probe already sits at the free end of the arena */
+	void linkProbe(int n) {
+		keyStart[n + 1] = probeEnd;
+	}
+
+	void growKeys(int cap) {
+		keyStart = Arrays.copyOf(keyStart, cap + 1);
+	}
+}
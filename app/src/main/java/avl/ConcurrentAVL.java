@@ -0,0 +1,400 @@
+package avl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A thread-safe AVL set of strings with optimistic, lock-free reads.
+ *
+ * The design follows Bronson, Casper, Chafi and Olukotun, "A Practical
+ * Concurrent Binary Search Tree" (PPoPP 2010), cut down to the
+ * insert-only case: this class deliberately has no remove, which keeps
+ * it clear of the paper's routing nodes and unlinking. Each node carries a
+ * version number that a rotation bumps while the node's key range
+ * shrinks. Readers descend hand over hand: they read a child, then check
+ * the parent's version is still the one they saw on arrival, and step
+ * back a level if it isn't. Readers never take a lock. They only spin
+ * briefly when they land on a node that is in the middle of being
+ * rotated down.
+ *
+ * Writers lock only what they change. An insert locks the parent it
+ * hangs the new leaf from. Each rebalancing step locks the parent, the
+ * node and the one or two children it rotates, always top-down so locks
+ * can't deadlock.
+ *
+ * Because this set never removes a key, a key found once is in it for
+ * good; only "not found" answers need validating. */
+public class ConcurrentAVL implements DedupSet {
+
+	/* version bit set while a rotation moves the node down */
+	private static final long SHRINKING = 1;
+
+	/* spins before a reader starts yielding on a shrinking node */
+	private static final int SPINS = 100;
+
+	/* attemptSearch / attemptInsert results */
+	private static final int RETRY = -1, ABSENT = 0, PRESENT = 1, INSERTED = 2;
+
+	/* heights in balance decisions; NOTHING means "height and balance both fine" */
+	private static final int NOTHING = -1, REBALANCE = -2;
+
+	/** a node. key is fixed; everything else changes only under the
+	 * node's own lock, except parent, which is changed under the lock of
+	 * the node's old parent */
+	static final class Node {
+		final String key;
+		volatile int height;
+		volatile long version;
+		volatile Node parent;
+		volatile Node left;
+		volatile Node right;
+
+		Node(String key, Node parent) {
+			this.key = key;
+			this.parent = parent;
+			this.height = 1;
+		}
+
+		Node child(int dir) {
+			return (dir < 0) ? left : right;
+		}
+
+		public String toString() {
+			return key + "(" + height + ")";
+		}
+	}
+
+	/* the real root is holder.right. holder never moves, so rotations at
+	 * the root need no special case */
+	private final Node holder = new Node(null, null);
+
+	private final LongAdder size = new LongAdder();
+
+	public int getSize() {
+		return size.intValue();
+	}
+
+	public int size() {
+		return getSize();
+	}
+
+	/** same as avlInsert */
+	public void insert(String w) {
+		avlInsert(w);
+	}
+
+	/** same as search */
+	public boolean contains(String w) {
+		return search(w);
+	}
+
+	/** the root node, or null if the set is empty. only meaningful when no
+	 * insert is running */
+	Node root() {
+		return holder.right;
+	}
+
+	/** return whether w is in the set. never blocks. */
+	public boolean search(String w) {
+		while (true) {
+			int r = attemptSearch(w, holder, 1, holder.version);
+			if (r != RETRY) return r == PRESENT;
+		}
+	}
+
+	/** insert w into the set, maintaining AVL balance. returns false if
+	 * w was already present */
+	public boolean avlInsert(String w) {
+		while (true) {
+			int r = attemptInsert(w, holder, 1, holder.version);
+			if (r != RETRY) return r == INSERTED;
+		}
+	}
+
+	/* look for w below node, in direction dir. nodeV is the version node
+	 * had when the search arrived there, with w inside its key range */
+	private int attemptSearch(String w, Node node, int dir, long nodeV) {
+		while (true) {
+			Node child = node.child(dir);
+			if (child == null) {
+				return (node.version != nodeV) ? RETRY : ABSENT;
+			}
+			int c = w.compareTo(child.key);
+			if (c == 0) return PRESENT;
+			long childV = child.version;
+			if ((childV & SHRINKING) != 0) {
+				waitUntilStable(child);
+				/* fall through to revalidate node, then try again */
+			} else if (child != node.child(dir)) {
+				continue;
+			}
+			if (node.version != nodeV) return RETRY;
+			if ((childV & SHRINKING) != 0) continue;
+			int r = attemptSearch(w, child, c, childV);
+			if (r != RETRY) return r;
+		}
+	}
+
+	/* same descent as attemptSearch, hanging w from the first empty slot */
+	private int attemptInsert(String w, Node node, int dir, long nodeV) {
+		while (true) {
+			Node child = node.child(dir);
+			if (child == null) {
+				boolean linked = false;
+				synchronized (node) {
+					if (node.version != nodeV) return RETRY;
+					if (node.child(dir) == null) {
+						Node n = new Node(w, node);
+						if (dir < 0) node.left = n;
+						else node.right = n;
+						linked = true;
+					}
+				}
+				if (!linked) continue; /* lost a race for the slot */
+				size.increment();
+				fixHeightAndRebalance(node);
+				return INSERTED;
+			}
+			int c = w.compareTo(child.key);
+			if (c == 0) return PRESENT;
+			long childV = child.version;
+			if ((childV & SHRINKING) != 0) {
+				waitUntilStable(child);
+			} else if (child != node.child(dir)) {
+				continue;
+			}
+			if (node.version != nodeV) return RETRY;
+			if ((childV & SHRINKING) != 0) continue;
+			int r = attemptInsert(w, child, c, childV);
+			if (r != RETRY) return r;
+		}
+	}
+
+	/* spin, then yield, until no rotation is moving n. never locks */
+	private static void waitUntilStable(Node n) {
+		for (int i = 0; (n.version & SHRINKING) != 0; i++) {
+			if (i < SPINS) Thread.onSpinWait();
+			else Thread.yield();
+		}
+	}
+
+	private static int height(Node n) {
+		return (n == null) ? 0 : n.height;
+	}
+
+	/* what node needs, judging by unlocked reads: REBALANCE, NOTHING, or
+	 * the height it should have. heights here count a leaf as 1 and an
+	 * empty subtree as 0 */
+	private int condition(Node n) {
+		if (n == holder) return NOTHING;
+		int hl = height(n.left), hr = height(n.right);
+		if (hl - hr > 1 || hr - hl > 1) return REBALANCE;
+		int h = 1 + Math.max(hl, hr);
+		return (h != n.height) ? h : NOTHING;
+	}
+
+	/* walk from node toward the root, fixing heights and rotating, until
+	 * nothing on the way needs changing */
+	private void fixHeightAndRebalance(Node node) {
+		while (node != null && node != holder) {
+			int c = condition(node);
+			if (c == NOTHING) return;
+			if (c != REBALANCE) {
+				synchronized (node) {
+					node = fixHeight(node);
+				}
+			} else {
+				Node p = node.parent;
+				synchronized (p) {
+					if (node.parent == p) {
+						synchronized (node) {
+							node = rebalance(p, node);
+						}
+					}
+					/* else node moved under us; look at it again */
+				}
+			}
+		}
+	}
+
+	/* node is locked. fix its height; return the next node to look at */
+	private Node fixHeight(Node node) {
+		int c = condition(node);
+		if (c == REBALANCE) return node;
+		if (c == NOTHING) return null;
+		node.height = c;
+		return node.parent;
+	}
+
+	/* p and n are locked and p is n's parent */
+	private Node rebalance(Node p, Node n) {
+		Node nl = n.left, nr = n.right;
+		int hl = height(nl), hr = height(nr);
+		int bal = hl - hr;
+		if (bal > 1) return rebalanceToRight(p, n, nl, hr);
+		if (bal < -1) return rebalanceToLeft(p, n, nr, hl);
+		int h = 1 + Math.max(hl, hr);
+		if (h != n.height) {
+			n.height = h;
+			return fixHeight(p);
+		}
+		return null;
+	}
+
+	/* n is left-heavy: rotate right, or left-right if nl leans right */
+	private Node rebalanceToRight(Node p, Node n, Node nl, int hr) {
+		synchronized (nl) {
+			int hl = nl.height;
+			if (hl - hr <= 1) return n; /* changed since we looked */
+			Node nlr = nl.right;
+			int hll = height(nl.left), hlr = height(nlr);
+			if (hll >= hlr) return rotateRight(p, n, nl, hr, hll, nlr, hlr);
+			synchronized (nlr) {
+				hlr = nlr.height;
+				if (hll >= hlr) return rotateRight(p, n, nl, hr, hll, nlr, hlr);
+				return rotateRightOverLeft(p, n, nl, hr, hll, nlr);
+			}
+		}
+	}
+
+	/* mirror image of rebalanceToRight */
+	private Node rebalanceToLeft(Node p, Node n, Node nr, int hl) {
+		synchronized (nr) {
+			int hr = nr.height;
+			if (hr - hl <= 1) return n;
+			Node nrl = nr.left;
+			int hrr = height(nr.right), hrl = height(nrl);
+			if (hrr >= hrl) return rotateLeft(p, n, nr, hl, hrr, nrl, hrl);
+			synchronized (nrl) {
+				hrl = nrl.height;
+				if (hrr >= hrl) return rotateLeft(p, n, nr, hl, hrr, nrl, hrl);
+				return rotateLeftOverRight(p, n, nr, hl, hrr, nrl);
+			}
+		}
+	}
+
+	/* point p's link to n at repl instead */
+	private static void replaceChild(Node p, Node n, Node repl) {
+		if (p.left == n) p.left = repl;
+		else p.right = repl;
+		repl.parent = p;
+	}
+
+	private static long begin(long v) {
+		return v | SHRINKING;
+	}
+
+	private static long end(long v) {
+		return (v | SHRINKING) + 1;
+	}
+
+	/* the node, if any, still out of balance after a rotation; otherwise
+	 * carry on fixing heights at p. heights read without locks can be
+	 * stale under concurrent inserts, so a rotation isn't guaranteed to
+	 * leave everything balanced */
+	private Node next(Node p, Node a, int balA, Node b, int balB) {
+		if (unbalanced(balA)) return a;
+		if (unbalanced(balB)) return b;
+		return fixHeight(p);
+	}
+
+	private static boolean unbalanced(int bal) {
+		return bal < -1 || bal > 1;
+	}
+
+	/* p, n and nl are locked. n moves down to the right of nl */
+	private Node rotateRight(Node p, Node n, Node nl, int hr, int hll, Node nlr, int hlr) {
+		long v = n.version;
+		n.version = begin(v);
+
+		n.left = nlr;
+		if (nlr != null) nlr.parent = n;
+		nl.right = n;
+		n.parent = nl;
+		replaceChild(p, n, nl);
+
+		int hn = 1 + Math.max(hlr, hr);
+		n.height = hn;
+		nl.height = 1 + Math.max(hll, hn);
+
+		n.version = end(v);
+		return next(p, n, hlr - hr, nl, hll - hn);
+	}
+
+	/* mirror image of rotateRight */
+	private Node rotateLeft(Node p, Node n, Node nr, int hl, int hrr, Node nrl, int hrl) {
+		long v = n.version;
+		n.version = begin(v);
+
+		n.right = nrl;
+		if (nrl != null) nrl.parent = n;
+		nr.left = n;
+		n.parent = nr;
+		replaceChild(p, n, nr);
+
+		int hn = 1 + Math.max(hl, hrl);
+		n.height = hn;
+		nr.height = 1 + Math.max(hn, hrr);
+
+		n.version = end(v);
+		return next(p, n, hrl - hl, nr, hn - hrr);
+	}
+
+	/* p, n, nl and nlr are locked. nlr moves up over both nl and n */
+	private Node rotateRightOverLeft(Node p, Node n, Node nl, int hr, int hll, Node nlr) {
+		long v = n.version, vl = nl.version;
+		Node nlrl = nlr.left, nlrr = nlr.right;
+		int hlrl = height(nlrl), hlrr = height(nlrr);
+		n.version = begin(v);
+		nl.version = begin(vl);
+
+		n.left = nlrr;
+		if (nlrr != null) nlrr.parent = n;
+		nl.right = nlrl;
+		if (nlrl != null) nlrl.parent = nl;
+		nlr.left = nl;
+		nl.parent = nlr;
+		nlr.right = n;
+		n.parent = nlr;
+		replaceChild(p, n, nlr);
+
+		int hn = 1 + Math.max(hlrr, hr);
+		n.height = hn;
+		int hl = 1 + Math.max(hll, hlrl);
+		nl.height = hl;
+		nlr.height = 1 + Math.max(hl, hn);
+
+		n.version = end(v);
+		nl.version = end(vl);
+		if (unbalanced(hl - hn)) return nlr;
+		return next(p, n, hlrr - hr, nl, hll - hlrl);
+	}
+
+	/* mirror image of rotateRightOverLeft */
+	private Node rotateLeftOverRight(Node p, Node n, Node nr, int hl, int hrr, Node nrl) {
+		long v = n.version, vr = nr.version;
+		Node nrll = nrl.left, nrlr = nrl.right;
+		int hrll = height(nrll), hrlr = height(nrlr);
+		n.version = begin(v);
+		nr.version = begin(vr);
+
+		n.right = nrll;
+		if (nrll != null) nrll.parent = n;
+		nr.left = nrlr;
+		if (nrlr != null) nrlr.parent = nr;
+		nrl.right = nr;
+		nr.parent = nrl;
+		nrl.left = n;
+		n.parent = nrl;
+		replaceChild(p, n, nrl);
+
+		int hn = 1 + Math.max(hl, hrll);
+		n.height = hn;
+		int hr = 1 + Math.max(hrlr, hrr);
+		nr.height = hr;
+		nrl.height = 1 + Math.max(hn, hr);
+
+		n.version = end(v);
+		nr.version = end(vr);
+		if (unbalanced(hn - hr)) return nrl;
+		return next(p, n, hrll - hl, nr, hrlr - hrr);
+	}
+}
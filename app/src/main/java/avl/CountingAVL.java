@@ -0,0 +1,137 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/** An AVL map from each distinct string to the number of times it was
+ * added. add descends once: a word already present has its count bumped
+ * in place at the node the descent stops on, and only a new word links
+ * a node and retraces. The nodes are parallel arrays, balanced by
+ * IndexedAVL, with each node's count a primitive long beside its word,
+ * so a duplicate costs no allocation at all.
+ *
+ * Words are ordered by String.compareTo, as in AVL. Unique's topk mode
+ * walks the counts in order and keeps the k most frequent in a bounded
+ * heap. */
+public class CountingAVL extends IndexedAVL implements DedupSet {
+
+	private String[] word;
+	private long[] count;
+
+	/* the word being searched for or added */
+	private String probe;
+
+	private long total;
+
+	public CountingAVL() {
+		this(16);
+	}
+
+	/** an empty map with room for capacity words before growing */
+	public CountingAVL(int capacity) {
+		super(capacity);
+		word = new String[capacity()];
+		count = new long[capacity()];
+	}
+
+	/** the number of distinct words */
+	public int size() {
+		return nodes;
+	}
+
+	public int getSize() {
+		return nodes;
+	}
+
+	/** the number of adds, duplicates included */
+	public long total() {
+		return total;
+	}
+
+	/** same as add */
+	public void insert(String w) {
+		add(w);
+	}
+
+	public boolean contains(String w) {
+		return search(w) != NIL;
+	}
+
+	/** how many times w was added, 0 if never */
+	public long count(String w) {
+		int n = search(w);
+		return (n == NIL) ? 0 : count[n];
+	}
+
+	/** find w in the tree. return the node containing w or NIL if not found */
+	public int search(String w) {
+		probe = w;
+		int n = findProbe();
+		probe = null;
+		return n;
+	}
+
+	/** the word stored at node n */
+	public String key(int n) {
+		return word[n];
+	}
+
+	/** the count stored at node n */
+	public long count(int n) {
+		return count[n];
+	}
+
+	/** count one more occurrence of w, inserting it with count 1 if it is
+	 * new. returns w's count after the add */
+	public long add(String w) {
+		total++;
+		probe = w;
+		int n = insertProbe();
+		probe = null;
+		return (n == NIL) ? 1 : ++count[n];
+	}
+
+	/** pass every word and its count to action, in sorted order of words */
+	public void forEach(ObjLongConsumer<String> action) {
+		for (int n = first(); n != NIL; n = next(n)) {
+			action.accept(word[n], count[n]);
+		}
+	}
+
+	int compareProbe(int n) {
+		return probe.compareTo(word[n]);
+	}
+
+	void linkProbe(int n) {
+		word[n] = probe;
+		count[n] = 1;
+	}
+
+	void growKeys(int cap) {
+		word = Arrays.copyOf(word, cap);
+		count = Arrays.copyOf(count, cap);
+	}
+
+	/** a word and how many times it was added, as returned by Unique.topK */
+	public static final class Count {
+		public final String word;
+		public final long count;
+
+		public Count(String word, long count) {
+			this.word = word;
+			this.count = count;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Count && ((Count) o).count == count && ((Count) o).word.equals(word);
+		}
+
+		public int hashCode() {
+			return word.hashCode() * 31 + Long.hashCode(count);
+		}
+
+		public String toString() {
+			return word + "(" + count + ")";
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** The part of a set of strings that Unique needs: add a line, ask
+ * whether a line has been seen, and count the distinct lines. Each
+ * engine Unique can run on implements this. */
+public interface DedupSet {
+
+	/** add w to the set */
+	void insert(String w);
+
+	/** add the UTF-8 line buf[off, off + len), as handed over by
+	 * LineReader. engines that store bytes override this to skip
+	 * building a String */
+	default void insert(ByteBuffer buf, int off, int len) {
+		byte[] b = new byte[len];
+		buf.get(off, b, 0, len);
+		insert(new String(b, StandardCharsets.UTF_8));
+	}
+
+	/** return whether w is in the set */
+	boolean contains(String w);
+
+	/** the number of distinct strings in the set */
+	int size();
+
+	/** release anything the set holds outside the Java heap. the set is
+	 * unusable afterwards. does nothing for heap-only sets */
+	default void close() {
+	}
+}
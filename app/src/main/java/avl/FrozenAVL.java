@@ -0,0 +1,101 @@
+package avl;
+
+/** A read-only copy of an AVL's words laid out for search, made by
+ * AVL.freeze. The words sit in an implicit tree in Eytzinger (BFS) order:
+ * slot 1 is the root and slot i has children 2i and 2i + 1, so there are
+ * no pointers and the top levels of the tree share a few cache lines.
+ *
+ * A search mostly touches one long[]: each slot holds the first four
+ * chars of its word packed big-endian into a long, and one unsigned
+ * comparison of the probe's packed chars against it decides the branch
+ * whenever the words differ in those chars. Only on a tie does the
+ * search look at the whole word, whose chars live back to back in one
+ * char[] arena, again in slot order. Comparing UTF-16 chars gives exactly
+ * String.compareTo order, so the layout agrees with the AVL it came from.
+ *
+ * The descent always runs the full height of the tree and picks the next
+ * slot arithmetically rather than by branching on the result; the match,
+ * if any, is recovered from the final slot at the end. */
+public final class FrozenAVL {
+
+	private final int n;
+	private final long[] prefix; /* slot i's CharPrefix.pack; slot 0 unused */
+	private final int[] start;   /* slot i's chars are arena[start[i], start[i + 1]) */
+	private final char[] arena;
+
+	/* sorted must be sorted and distinct */
+	FrozenAVL(String[] sorted) {
+		n = sorted.length;
+		prefix = new long[n + 1];
+		start = new int[n + 2];
+		String[] slot = new String[n + 1];
+		place(sorted, slot, 0, 1);
+		long chars = 0;
+		for (int i = 1; i <= n; i++) chars += slot[i].length();
+		if (chars > Integer.MAX_VALUE) throw new IllegalArgumentException("too many chars to freeze: " + chars);
+		arena = new char[(int) chars];
+		int at = 0;
+		for (int i = 1; i <= n; i++) {
+			String w = slot[i];
+			prefix[i] = CharPrefix.pack(w);
+			start[i] = at;
+			w.getChars(0, w.length(), arena, at);
+			at += w.length();
+		}
+		start[n + 1] = at;
+	}
+
+	/* put sorted[k...] into the subtree rooted at slot i in order; returns
+	 * the index of the next word to place */
+	private int place(String[] sorted, String[] slot, int k, int i) {
+		if (i > n) return k;
+		k = place(sorted, slot, k, 2 * i);
+		slot[i] = sorted[k++];
+		return place(sorted, slot, k, 2 * i + 1);
+	}
+
+	public int size() {
+		return n;
+	}
+
+	/** bytes held by the arrays backing this copy */
+	public long footprint() {
+		return 8L * prefix.length + 4L * start.length + 2L * arena.length;
+	}
+
+	/** return whether w is present */
+	public boolean contains(String w) {
+		return search(w) != 0;
+	}
+
+	/** the slot holding w, or 0 if w is not present */
+	public int search(String w) {
+		long p = CharPrefix.pack(w);
+		int i = 1;
+		while (i <= n) {
+			int c = Long.compareUnsigned(prefix[i], p);
+			if (c == 0) c = compare(i, w);
+			i = 2 * i + (c >>> 31); /* right when slot i < w */
+		}
+		/* undo the right turns taken after the last left turn: that left
+		 * turn was at the smallest slot >= w */
+		i >>>= Integer.numberOfTrailingZeros(~i) + 1;
+		return (i != 0 && prefix[i] == p && compare(i, w) == 0) ? i : 0;
+	}
+
+	/** the word in slot i */
+	public String key(int i) {
+		return new String(arena, start[i], start[i + 1] - start[i]);
+	}
+
+	/* compare slot i's word with w, like key(i).compareTo(w) */
+	private int compare(int i, String w) {
+		int s = start[i], len = start[i + 1] - s, wl = w.length();
+		int m = Math.min(len, wl);
+		for (int j = 0; j < m; j++) {
+			int d = arena[s + j] - w.charAt(j);
+			if (d != 0) return d;
+		}
+		return len - wl;
+	}
+}
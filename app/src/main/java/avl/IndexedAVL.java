@@ -0,0 +1,212 @@
+package avl;
+
+import java.util.Arrays;
+
+/** The balancing shared by the AVL trees whose nodes are int indexes into
+ * parallel arrays rather than objects: CompactAVL, PackedAVL and
+ * CountingAVL. This class owns the links and heights and does the
+ * descent, retrace and rotations; a subclass owns the keys.
+ *
+ * A subclass stages the key it is looking for as its probe, then calls
+ * findProbe or insertProbe. The descent asks compareProbe at each node,
+ * and insertProbe calls linkProbe to store the probe's key in a new node. */
+abstract class IndexedAVL {
+
+	/** index standing in for a null link */
+	public static final int NIL = -1;
+
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	private byte[] height;
+
+	private int root = NIL;
+
+	/** the number of nodes; node indexes run from 0 to nodes - 1 in the
+	 * order they were linked */
+	int nodes;
+
+	IndexedAVL(int capacity) {
+		capacity = Math.max(capacity, 1);
+		left = new int[capacity];
+		right = new int[capacity];
+		parent = new int[capacity];
+		height = new byte[capacity];
+	}
+
+	/** the root node, or NIL if the tree is empty */
+	public int root() {
+		return root;
+	}
+
+	public int left(int n) {
+		return left[n];
+	}
+
+	public int right(int n) {
+		return right[n];
+	}
+
+	public int parent(int n) {
+		return parent[n];
+	}
+
+	public int height(int n) {
+		return height[n];
+	}
+
+	/** the number of node slots the arrays have room for */
+	int capacity() {
+		return left.length;
+	}
+
+	/* compare the staged probe with node n's key, like compareTo */
+	abstract int compareProbe(int n);
+
+	/* store the staged probe's key at the new node n */
+	abstract void linkProbe(int n);
+
+	/* grow the subclass's per-node arrays to cap nodes */
+	abstract void growKeys(int cap);
+
+	/* the node holding the probe, or NIL */
+	int findProbe() {
+		int n = root;
+		while (n != NIL) {
+			int c = compareProbe(n);
+			if (c == 0) return n;
+			n = (c < 0) ? left[n] : right[n];
+		}
+		return NIL;
+	}
+
+	/* insert the probe, maintaining AVL balance. returns the node already
+	 * holding the probe, or NIL if it was new and a node was linked for it */
+	int insertProbe() {
+		if (root == NIL) {
+			root = newNode(NIL);
+			return NIL;
+		}
+		int n = root, p;
+		int c;
+		do {
+			p = n;
+			c = compareProbe(p);
+			if (c == 0) return p; /* no insertion, already exists */
+			n = (c < 0) ? left[p] : right[p];
+		} while (n != NIL);
+
+		n = newNode(p);
+		if (c < 0) left[p] = n;
+		else right[p] = n;
+		retrace(p);
+		return NIL;
+	}
+
+	/* claim the next node index as a leaf under p */
+	private int newNode(int p) {
+		if (nodes == left.length) grow();
+		int n = nodes++;
+		left[n] = NIL;
+		right[n] = NIL;
+		parent[n] = p;
+		height[n] = 0;
+		linkProbe(n);
+		return n;
+	}
+
+	private void grow() {
+		int cap = left.length + (left.length >> 1) + 1;
+		left = Arrays.copyOf(left, cap);
+		right = Arrays.copyOf(right, cap);
+		parent = Arrays.copyOf(parent, cap);
+		height = Arrays.copyOf(height, cap);
+		growKeys(cap);
+	}
+
+	/* the first node in key order, or NIL */
+	int first() {
+		int n = root;
+		if (n == NIL) return NIL;
+		while (left[n] != NIL) n = left[n];
+		return n;
+	}
+
+	/* the node after n in key order, or NIL, found through parent links */
+	int next(int n) {
+		if (right[n] != NIL) {
+			n = right[n];
+			while (left[n] != NIL) n = left[n];
+			return n;
+		}
+		while (parent[n] != NIL && right[parent[n]] == n) n = parent[n];
+		return parent[n];
+	}
+
+	private int h(int n) {
+		return (n == NIL) ? -1 : height[n];
+	}
+
+	private void recalcHeight(int n) {
+		height[n] = (byte) (Math.max(h(left[n]), h(right[n])) + 1);
+	}
+
+	private int balance(int n) {
+		return h(right[n]) - h(left[n]);
+	}
+
+	/* fix heights from n up after a leaf was added below it. as in
+	 * AVL.retrace, stop once a height comes out unchanged or after the one
+	 * single or double rotation an insert can need */
+	private void retrace(int n) {
+		while (n != NIL) {
+			int old = height[n];
+			recalcHeight(n);
+			int b = balance(n);
+			if (b > 1) {
+				if (balance(right[n]) < 0) rightRotate(right[n]);
+				leftRotate(n);
+				return;
+			}
+			if (b < -1) {
+				if (balance(left[n]) > 0) leftRotate(left[n]);
+				rightRotate(n);
+				return;
+			}
+			if (height[n] == old) return;
+			n = parent[n];
+		}
+	}
+
+	/* point x's parent (or the root) at newrt in place of x */
+	private void replaceChild(int x, int newrt) {
+		int p = parent[newrt];
+		if (p == NIL) root = newrt;
+		else if (left[p] == x) left[p] = newrt;
+		else right[p] = newrt;
+	}
+
+	private void leftRotate(int x) {
+		int newrt = right[x];
+		parent[newrt] = parent[x];
+		right[x] = left[newrt];
+		if (left[newrt] != NIL) parent[left[newrt]] = x;
+		left[newrt] = x;
+		parent[x] = newrt;
+		recalcHeight(x);
+		recalcHeight(newrt);
+		replaceChild(x, newrt);
+	}
+
+	private void rightRotate(int y) {
+		int newrt = left[y];
+		parent[newrt] = parent[y];
+		left[y] = right[newrt];
+		if (right[newrt] != NIL) parent[right[newrt]] = y;
+		right[newrt] = y;
+		parent[y] = newrt;
+		recalcHeight(y);
+		recalcHeight(newrt);
+		replaceChild(y, newrt);
+	}
+}
@@ -0,0 +1,153 @@
+package avl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Reads a file line by line through memory-mapped windows, handing each
+ * line to a consumer as a slice of the mapped buffer. No String or
+ * per-line object is created; lines are split on '\n' and a trailing
+ * '\r' is dropped. Files larger than 2GB are mapped one window at a time.
+ *
+ * forEach keeps no state in the reader, so several threads can read
+ * different ranges of the same reader at once. */
+public class LineReader implements Closeable {
+
+	/** receives one line at a time. the slice is only valid for the
+	 * duration of the call - copy anything that needs to outlive it. */
+	public interface LineConsumer {
+		void line(MappedByteBuffer buf, int off, int len);
+	}
+
+	/** default window size: large enough that remapping is rare, small
+	 * enough to stay well under the 2GB limit of a single mapping */
+	static final int WINDOW = 1 << 28;
+
+	private final FileChannel channel;
+	private final int window;
+
+	/** open f for reading */
+	public LineReader(Path f) throws IOException {
+		this(f, WINDOW);
+	}
+
+	/* window is exposed to the package so tests can force lines to
+	 * straddle window boundaries */
+	LineReader(Path f, int window) throws IOException {
+		this.channel = FileChannel.open(f, StandardOpenOption.READ);
+		this.window = window;
+	}
+
+	/** size of the underlying file in bytes */
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	/** the first line start at or after pos: pos itself if it is 0 or
+	 * follows a newline, otherwise the byte after the next newline (or the
+	 * file size if there is none) */
+	public long lineStart(long pos) throws IOException {
+		long end = channel.size();
+		if (pos <= 0) return 0;
+		if (pos >= end) return end;
+		ByteBuffer b = ByteBuffer.allocate(4096);
+		long at = pos - 1;
+		while (at < end) {
+			b.clear();
+			int n = channel.read(b, at);
+			if (n <= 0) break;
+			for (int i = 0; i < n; i++) {
+				if (b.get(i) == '\n') return at + i + 1;
+			}
+			at += n;
+		}
+		return end;
+	}
+
+	/** split the file into up to n byte ranges of roughly equal size, each
+	 * starting at the beginning of a line. returns the range boundaries:
+	 * range i is [bounds[i], bounds[i + 1]). */
+	public long[] split(int n) throws IOException {
+		long end = channel.size();
+		long[] bounds = new long[n + 1];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			long b = lineStart(end / n * i);
+			if (k == 0 || b > bounds[k - 1]) bounds[k++] = b;
+		}
+		if (bounds[k - 1] < end || k == 1) bounds[k++] = end;
+		return Arrays.copyOf(bounds, k);
+	}
+
+	/** pass every line of the file to c, in order. returns the number
+	 * of lines read */
+	public long forEach(LineConsumer c) throws IOException {
+		return forEach(0, channel.size(), c);
+	}
+
+	/** pass every line that starts in [from, to) to c, in order. the last
+	 * line may run past to; it is read through to its newline (or end of
+	 * file). returns the number of lines read */
+	public long forEach(long from, long to, LineConsumer c) throws IOException {
+		long end = channel.size();
+		long pos = from;
+		long lines = 0;
+		int w = window;
+		while (pos < to) {
+			int len = (int) Math.min(w, end - pos);
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+			boolean last = pos + len == end;
+			int start = 0;
+			int i = 0;
+			while (i < len && pos + start < to) {
+				if (buf.get(i) == '\n') {
+					c.line(buf, start, trim(buf, start, i));
+					lines++;
+					start = i + 1;
+				}
+				i++;
+			}
+			if (pos + start >= to) {
+				break;
+			}
+			if (last) {
+				/* final line with no newline after it */
+				if (start < len) {
+					c.line(buf, start, trim(buf, start, len));
+					lines++;
+				}
+				break;
+			}
+			if (start == 0) {
+				/* a single line longer than the window: widen and retry */
+				if (w == Integer.MAX_VALUE) {
+					throw new IOException("line at byte " + pos + " is longer than 2GB");
+				}
+				w = (int) Math.min(2L * w, Integer.MAX_VALUE);
+				continue;
+			}
+			/* carry the partial line over into the next window */
+			pos += start;
+			w = window;
+		}
+		return lines;
+	}
+
+	/* length of the line in [start, nl), minus a trailing '\r' */
+	private static int trim(MappedByteBuffer buf, int start, int nl) {
+		if (nl > start && buf.get(nl - 1) == '\r') {
+			nl--;
+		}
+		return nl - start;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,371 @@
+package avl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** An AVL tree of strings whose nodes and key bytes live outside the Java
+ * heap, in direct ByteBuffer pages. The heap only holds this object, two
+ * page tables and one ByteBuffer per page, so GC cost doesn't grow with
+ * the number of keys.
+ *
+ * A node is an int id addressing a 24-byte record: left, right, parent,
+ * height and the 8-byte address of its key. A key is stored as a 4-byte
+ * length followed by its UTF-8 bytes, and keys are compared byte-wise in
+ * place, 8 bytes at a time, without copying them back onto the heap.
+ * Keys are ordered by unsigned byte comparison, like CompactAVL.
+ *
+ * The tree must be closed when done; close() frees the pages immediately
+ * rather than waiting for the GC to notice the buffers are unreachable. */
+public class OffHeapAVL implements DedupSet, AutoCloseable {
+
+	/** id standing in for a null link */
+	public static final int NIL = -1;
+
+	/* node record layout */
+	private static final int LEFT = 0, RIGHT = 4, PARENT = 8, HEIGHT = 12, KEY = 16;
+	private static final int NODE = 24;
+
+	/* default page sizes: 2^20 nodes (24MB) and 64MB of keys per page */
+	private static final int NODE_SHIFT = 20;
+	private static final int KEY_SHIFT = 26;
+
+	private final int nodeShift, nodeMask;
+	private final int keyShift, keyMask;
+
+	private ByteBuffer[] nodePages = new ByteBuffer[4];
+	private ByteBuffer[] keyPages = new ByteBuffer[4];
+	private int keyPageCount;
+	private int keyPos; /* append position in the last key page */
+
+	/* heap copy of String arguments, reused between calls */
+	private ByteBuffer scratch = ByteBuffer.allocate(64);
+
+	private int root = NIL;
+	private int size;
+	private boolean closed;
+
+	public OffHeapAVL() {
+		this(NODE_SHIFT, KEY_SHIFT);
+	}
+
+	/* page sizes are exposed to the package so tests can use tiny pages */
+	OffHeapAVL(int nodeShift, int keyShift) {
+		this.nodeShift = nodeShift;
+		this.nodeMask = (1 << nodeShift) - 1;
+		this.keyShift = keyShift;
+		this.keyMask = (1 << keyShift) - 1;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** same as avlInsert */
+	public void insert(String w) {
+		avlInsert(w);
+	}
+
+	/** same as avlInsert */
+	public void insert(ByteBuffer buf, int off, int len) {
+		avlInsert(buf, off, len);
+	}
+
+	public boolean contains(String w) {
+		return search(w) != NIL;
+	}
+
+	/** the root node, or NIL if the tree is empty */
+	public int root() {
+		return root;
+	}
+
+	public int left(int n) {
+		return node(n).getInt(at(n) + LEFT);
+	}
+
+	public int right(int n) {
+		return node(n).getInt(at(n) + RIGHT);
+	}
+
+	public int parent(int n) {
+		return node(n).getInt(at(n) + PARENT);
+	}
+
+	public int height(int n) {
+		return node(n).getInt(at(n) + HEIGHT);
+	}
+
+	/** the key stored at node n, copied onto the heap */
+	public String key(int n) {
+		long addr = node(n).getLong(at(n) + KEY);
+		ByteBuffer p = keyPages[(int) (addr >>> keyShift)];
+		int off = (int) addr & keyMask;
+		byte[] b = new byte[p.getInt(off)];
+		p.get(off + 4, b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/** bytes of off-heap memory held by this tree */
+	public long footprint() {
+		long nodes = 0;
+		for (ByteBuffer b : nodePages) {
+			if (b != null) nodes += b.capacity();
+		}
+		return nodes + ((long) keyPageCount << keyShift);
+	}
+
+	/** find w in the tree. return the node containing w or NIL if not found */
+	public int search(String w) {
+		int len = encode(w);
+		return search(scratch, 0, len);
+	}
+
+	/** find the UTF-8 key buf[off, off + len). return its node or NIL */
+	public int search(ByteBuffer buf, int off, int len) {
+		checkOpen();
+		int n = root;
+		while (n != NIL) {
+			int c = compareTo(buf, off, len, n);
+			if (c == 0) return n;
+			n = (c < 0) ? left(n) : right(n);
+		}
+		return NIL;
+	}
+
+	/** insert w into the tree, maintaining AVL balance */
+	public void avlInsert(String w) {
+		int len = encode(w);
+		avlInsert(scratch, 0, len);
+	}
+
+	/** insert the UTF-8 key buf[off, off + len), maintaining AVL balance.
+	 * buf may be a slice handed over by LineReader */
+	public void avlInsert(ByteBuffer buf, int off, int len) {
+		checkOpen();
+		if (root == NIL) {
+			root = newNode(NIL, buf, off, len);
+			return;
+		}
+		int n = root, p;
+		int c;
+		do {
+			p = n;
+			c = compareTo(buf, off, len, p);
+			if (c == 0) return; /* no insertion, already exists */
+			n = (c < 0) ? left(p) : right(p);
+		} while (n != NIL);
+
+		n = newNode(p, buf, off, len);
+		if (c < 0) setLeft(p, n);
+		else setRight(p, n);
+		retrace(p);
+	}
+
+	/** free all off-heap memory. the tree is empty and unusable afterwards */
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		for (ByteBuffer b : nodePages) free(b);
+		for (ByteBuffer b : keyPages) free(b);
+		nodePages = null;
+		keyPages = null;
+		root = NIL;
+		size = 0;
+	}
+
+	private void checkOpen() {
+		if (closed) throw new IllegalStateException("tree has been closed");
+	}
+
+	/* UTF-8 encode w into scratch and return its length */
+	private int encode(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		if (b.length > scratch.capacity()) {
+			scratch = ByteBuffer.allocate(Math.max(b.length, 2 * scratch.capacity()));
+		}
+		scratch.put(0, b);
+		return b.length;
+	}
+
+	/* compare the probe buf[off, off + len) with node n's key, as unsigned
+	 * bytes. both buffers are big-endian, so comparing 8-byte words as
+	 * unsigned longs gives the same answer as comparing byte by byte */
+	private int compareTo(ByteBuffer buf, int off, int len, int n) {
+		long addr = node(n).getLong(at(n) + KEY);
+		ByteBuffer p = keyPages[(int) (addr >>> keyShift)];
+		int koff = ((int) addr & keyMask) + 4;
+		int klen = p.getInt(koff - 4);
+		int m = Math.min(len, klen);
+		int i = 0;
+		for (; i + 8 <= m; i += 8) {
+			long x = buf.getLong(off + i), y = p.getLong(koff + i);
+			if (x != y) return Long.compareUnsigned(x, y);
+		}
+		for (; i < m; i++) {
+			int c = (buf.get(off + i) & 0xff) - (p.get(koff + i) & 0xff);
+			if (c != 0) return c;
+		}
+		return len - klen;
+	}
+
+	/* copy the key into the key arena and create a node for it */
+	private int newNode(int p, ByteBuffer buf, int off, int len) {
+		if (len + 4 > keyMask + 1) {
+			throw new IllegalArgumentException("key of " + len + " bytes does not fit in a key page");
+		}
+		if (keyPageCount == 0 || keyPos + 4 + len > keyMask + 1) {
+			if (keyPageCount == keyPages.length) keyPages = Arrays.copyOf(keyPages, 2 * keyPageCount);
+			keyPages[keyPageCount++] = ByteBuffer.allocateDirect(keyMask + 1);
+			keyPos = 0;
+		}
+		ByteBuffer kp = keyPages[keyPageCount - 1];
+		long addr = ((long) (keyPageCount - 1) << keyShift) | keyPos;
+		kp.putInt(keyPos, len);
+		kp.put(keyPos + 4, buf, off, len);
+		keyPos += 4 + len;
+
+		int n = size;
+		if (n == Integer.MAX_VALUE) throw new IllegalStateException("tree is full");
+		int page = n >>> nodeShift;
+		if (page == nodePages.length) nodePages = Arrays.copyOf(nodePages, 2 * page);
+		if (nodePages[page] == null) nodePages[page] = ByteBuffer.allocateDirect(NODE << nodeShift);
+		ByteBuffer np = nodePages[page];
+		int a = at(n);
+		np.putInt(a + LEFT, NIL);
+		np.putInt(a + RIGHT, NIL);
+		np.putInt(a + PARENT, p);
+		np.putInt(a + HEIGHT, 0);
+		np.putLong(a + KEY, addr);
+		size++;
+		return n;
+	}
+
+	private ByteBuffer node(int n) {
+		return nodePages[n >>> nodeShift];
+	}
+
+	private int at(int n) {
+		return (n & nodeMask) * NODE;
+	}
+
+	private void setLeft(int n, int v) {
+		node(n).putInt(at(n) + LEFT, v);
+	}
+
+	private void setRight(int n, int v) {
+		node(n).putInt(at(n) + RIGHT, v);
+	}
+
+	private void setParent(int n, int v) {
+		node(n).putInt(at(n) + PARENT, v);
+	}
+
+	private int h(int n) {
+		return (n == NIL) ? -1 : height(n);
+	}
+
+	private void recalcHeight(int n) {
+		node(n).putInt(at(n) + HEIGHT, Math.max(h(left(n)), h(right(n))) + 1);
+	}
+
+	private int balance(int n) {
+		return h(right(n)) - h(left(n));
+	}
+
+	/* IndexedAVL's retrace and rotations, over links read from and
+	 * written to the node pages rather than heap arrays */
+	private void retrace(int n) {
+		while (n != NIL) {
+			int old = height(n);
+			recalcHeight(n);
+			int b = balance(n);
+			if (b > 1 || b < -1) {
+				rebalance(n);
+				return;
+			}
+			if (height(n) == old) return;
+			n = parent(n);
+		}
+	}
+
+	private void rebalance(int n) {
+		int balance = balance(n);
+		if (balance > 1) {
+			if (balance(right(n)) < 0) rightRotate(right(n));
+			leftRotate(n);
+		} else if (balance < -1) {
+			if (balance(left(n)) > 0) leftRotate(left(n));
+			rightRotate(n);
+		}
+	}
+
+	/* point x's parent (or the root) at newrt in place of x */
+	private void replaceChild(int x, int newrt) {
+		int p = parent(newrt);
+		if (p == NIL) root = newrt;
+		else if (left(p) == x) setLeft(p, newrt);
+		else setRight(p, newrt);
+	}
+
+	private void leftRotate(int x) {
+		int newrt = right(x);
+		int b = left(newrt);
+		setParent(newrt, parent(x));
+		setRight(x, b);
+		if (b != NIL) setParent(b, x);
+		setLeft(newrt, x);
+		setParent(x, newrt);
+		recalcHeight(x);
+		recalcHeight(newrt);
+		replaceChild(x, newrt);
+	}
+
+	private void rightRotate(int y) {
+		int newrt = left(y);
+		int b = right(newrt);
+		setParent(newrt, parent(y));
+		setLeft(y, b);
+		if (b != NIL) setParent(b, y);
+		setRight(newrt, y);
+		setParent(y, newrt);
+		recalcHeight(y);
+		recalcHeight(newrt);
+		replaceChild(y, newrt);
+	}
+
+	/* sun.misc.Unsafe.invokeCleaner releases a direct buffer's memory right
+	 * away. it lives in the jdk.unsupported module; if it can't be reached
+	 * the buffers are just dropped and the GC frees them later. */
+	private static final MethodHandle CLEANER = findCleaner();
+
+	private static MethodHandle findCleaner() {
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			return MethodHandles.lookup()
+				.unreflect(c.getMethod("invokeCleaner", ByteBuffer.class))
+				.bindTo(f.get(null));
+		} catch (ReflectiveOperationException | RuntimeException exc) {
+			return null;
+		}
+	}
+
+	private static void free(ByteBuffer b) {
+		if (b == null || CLEANER == null) return;
+		try {
+			CLEANER.invokeExact(b);
+		} catch (Throwable exc) {
+			/* leave it to the GC */
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** An AVL tree of strings specialised for keys of at most 8 UTF-8 bytes,
+ * like the 5-character lines of prefixes.txt. Such a key is packed
+ * big-endian into the high bytes of a long, so one unsigned long
+ * comparison orders two keys exactly as comparing their bytes would.
+ * Only when the longs are equal does the tree look at the key lengths,
+ * which tells "ab" from "ab\0". There is no String, no byte[] and no
+ * arena lookup on the search path.
+ *
+ * The nodes are parallel arrays as in CompactAVL, with the key taking
+ * one long and one length byte per node. Longer keys don't fit and go to
+ * an overflow CompactAVL instead. The two trees never share a key, so
+ * the set is their union and size is the sum of theirs. On input that is
+ * mostly long lines this tree is about as fast as a CompactAVL alone. */
+public class PackedAVL extends IndexedAVL implements DedupSet {
+
+	/** the longest key, in UTF-8 bytes, stored packed */
+	public static final int MAX_PACKED = 8;
+
+	private long[] key;
+	private byte[] keyLen;
+
+	/* the packed key being searched for or inserted, and its length */
+	private long probe;
+	private int probeLen;
+
+	/* keys longer than MAX_PACKED; created on the first one */
+	private CompactAVL overflow;
+
+	/* UTF-8 copy of String arguments, reused between calls */
+	private ByteBuffer scratch = ByteBuffer.allocate(64);
+
+	public PackedAVL() {
+		this(16);
+	}
+
+	/** an empty tree with room for capacity packed keys before growing */
+	public PackedAVL(int capacity) {
+		super(capacity);
+		key = new long[capacity()];
+		keyLen = new byte[capacity()];
+	}
+
+	/** the number of keys, packed and overflow */
+	public int getSize() {
+		return nodes + overflowSize();
+	}
+
+	public int size() {
+		return getSize();
+	}
+
+	/** the number of keys too long to pack */
+	public int overflowSize() {
+		return (overflow == null) ? 0 : overflow.getSize();
+	}
+
+	public void insert(String w) {
+		avlInsert(w);
+	}
+
+	public void insert(ByteBuffer buf, int off, int len) {
+		avlInsert(buf, off, len);
+	}
+
+	public boolean contains(String w) {
+		int len = encode(w);
+		if (len > MAX_PACKED) {
+			return overflow != null && overflow.search(scratch.array(), 0, len) != CompactAVL.NIL;
+		}
+		return search(pack(scratch, 0, len), len) != NIL;
+	}
+
+	/** the key stored at packed node n */
+	public String key(int n) {
+		byte[] b = new byte[keyLen[n]];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) (key[n] >>> (56 - 8 * i));
+		}
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/** bytes held by the arrays backing this tree, including unused
+	 * capacity and the overflow tree */
+	public long footprint() {
+		return 22L * capacity() + ((overflow == null) ? 0 : overflow.footprint());
+	}
+
+	/** find the packed key k of len bytes. return its node or NIL */
+	public int search(long k, int len) {
+		probe = k;
+		probeLen = len;
+		return findProbe();
+	}
+
+	/** insert w into the tree, maintaining AVL balance */
+	public void avlInsert(String w) {
+		int len = encode(w);
+		avlInsert(scratch, 0, len);
+	}
+
+	/** insert the UTF-8 key buf[off, off + len), maintaining AVL balance.
+	 * keys longer than MAX_PACKED go to the overflow tree */
+	public void avlInsert(ByteBuffer buf, int off, int len) {
+		if (len > MAX_PACKED) {
+			if (overflow == null) overflow = new CompactAVL();
+			overflow.avlInsert(buf, off, len);
+			return;
+		}
+		probe = pack(buf, off, len);
+		probeLen = len;
+		insertProbe();
+	}
+
+	/** the key buf[off, off + len), len <= MAX_PACKED, as a long whose
+	 * high bytes are the key bytes in order and whose low bytes are 0 */
+	static long pack(ByteBuffer buf, int off, int len) {
+		if (len == 8 && buf.order() == ByteOrder.BIG_ENDIAN) return buf.getLong(off);
+		long k = 0;
+		for (int i = 0; i < len; i++) {
+			k = (k << 8) | (buf.get(off + i) & 0xff);
+		}
+		return (len == 0) ? 0 : k << (64 - 8 * len);
+	}
+
+	/* the packed keys decide unless they are equal; then the lengths do */
+	int compareProbe(int n) {
+		int c = Long.compareUnsigned(probe, key[n]);
+		return (c != 0) ? c : probeLen - keyLen[n];
+	}
+
+	void linkProbe(int n) {
+		key[n] = probe;
+		keyLen[n] = (byte) probeLen;
+	}
+
+	void growKeys(int cap) {
+		key = Arrays.copyOf(key, cap);
+		keyLen = Arrays.copyOf(keyLen, cap);
+	}
+
+	/* UTF-8 encode w into scratch and return its length */
+	private int encode(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		if (b.length > scratch.capacity()) {
+			scratch = ByteBuffer.allocate(Math.max(b.length, 2 * scratch.capacity()));
+		}
+		scratch.put(0, b);
+		return b.length;
+	}
+}
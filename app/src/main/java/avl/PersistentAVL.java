@@ -0,0 +1,120 @@
+package avl;
+
+/** An immutable AVL tree of strings. insert returns a new tree that
+ * shares every subtree the insertion didn't touch with the old one, so
+ * each insert copies only the O(log n) nodes on the search path.
+ *
+ * Every tree is a snapshot. Holding on to one costs O(1), nothing ever
+ * modifies it, and all fields are final, so any thread can read it
+ * without locks once it has a reference. A writer typically keeps the
+ * latest tree in a volatile field that readers copy when they want a
+ * consistent view.
+ *
+ * Shared nodes can't know their parent, so there are no parent pointers;
+ * rebalancing happens on the way back out of the recursive insert, with
+ * the same single and double rotations as AVL.rebalance. */
+public final class PersistentAVL {
+
+	/** the empty tree */
+	public static final PersistentAVL EMPTY = new PersistentAVL(null, 0);
+
+	private final Node root;
+	private final int size;
+
+	private PersistentAVL(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/** the root node, or null if the tree is empty */
+	public Node root() {
+		return root;
+	}
+
+	/** return whether w is in the tree */
+	public boolean search(String w) {
+		Node n = root;
+		while (n != null) {
+			int c = w.compareTo(n.word);
+			if (c == 0) return true;
+			n = (c < 0) ? n.left : n.right;
+		}
+		return false;
+	}
+
+	/** return a tree holding this tree's words and w. if w is already
+	 * present the result is this tree itself */
+	public PersistentAVL insert(String w) {
+		Node r = insert(root, w);
+		return (r == root) ? this : new PersistentAVL(r, size + 1);
+	}
+
+	/* a copy of n's subtree with w added, or n itself if w is present */
+	private static Node insert(Node n, String w) {
+		if (n == null) return new Node(w, null, null);
+		int c = w.compareTo(n.word);
+		if (c == 0) return n;
+		if (c < 0) {
+			Node l = insert(n.left, w);
+			return (l == n.left) ? n : balanced(n.word, l, n.right);
+		}
+		Node r = insert(n.right, w);
+		return (r == n.right) ? n : balanced(n.word, n.left, r);
+	}
+
+	private static int height(Node n) {
+		return (n == null) ? -1 : n.height;
+	}
+
+	private static int balance(Node n) {
+		return height(n.right) - height(n.left);
+	}
+
+	/* a new node for w over l and r, rotated back into AVL balance if
+	 * l and r differ in height by two. same cases as AVL.rebalance */
+	private static Node balanced(String w, Node l, Node r) {
+		int balance = height(r) - height(l);
+		if (balance > 1) {
+			if (balance(r) < 0) r = rotateRight(r.word, r.left, r.right);
+			return rotateLeft(w, l, r);
+		}
+		if (balance < -1) {
+			if (balance(l) > 0) l = rotateLeft(l.word, l.left, l.right);
+			return rotateRight(w, l, r);
+		}
+		return new Node(w, l, r);
+	}
+
+	/* the left rotation of node (w, l, r), built from new nodes */
+	private static Node rotateLeft(String w, Node l, Node r) {
+		return new Node(r.word, new Node(w, l, r.left), r.right);
+	}
+
+	/* the right rotation of node (w, l, r), built from new nodes */
+	private static Node rotateRight(String w, Node l, Node r) {
+		return new Node(l.word, l.left, new Node(w, l.right, r));
+	}
+
+	/** an immutable node. height is computed from the children */
+	public static final class Node {
+		public final String word;
+		public final Node left;
+		public final Node right;
+		public final int height;
+
+		Node(String w, Node l, Node r) {
+			word = w;
+			left = l;
+			right = r;
+			height = Math.max(PersistentAVL.height(l), PersistentAVL.height(r)) + 1;
+		}
+
+		public String toString() {
+			return word + "(" + height + ")";
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** A compressed radix trie over the UTF-8 bytes of its strings. Each edge
+ * is labelled with a run of bytes, and a node with a single child and no
+ * string ending at it is merged into that child. A lookup walks the bytes
+ * of the key once, instead of running String.compareTo against each node
+ * on a tree path. That suits short keys with shared prefixes, like the
+ * lines of prefixes.txt.
+ *
+ * Children are kept sorted by the first byte of their label, in a byte[]
+ * next to the Node[], and found by binary search. */
+public class RadixTrie implements DedupSet {
+
+	private static final class Node {
+		byte[] label;
+		boolean terminal;
+		byte[] first = new byte[2]; /* first byte of each child's label, unsigned order */
+		Node[] kids = new Node[2];
+		int count;
+
+		Node(byte[] label) {
+			this.label = label;
+		}
+
+		/* index of the child whose label starts with b, or -(insertion point) - 1 */
+		int find(byte b) {
+			int lo = 0, hi = count - 1, key = b & 0xff;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int c = (first[mid] & 0xff) - key;
+				if (c == 0) return mid;
+				if (c < 0) lo = mid + 1;
+				else hi = mid - 1;
+			}
+			return -(lo + 1);
+		}
+
+		void add(int at, Node kid) {
+			if (count == kids.length) {
+				first = Arrays.copyOf(first, 2 * count);
+				kids = Arrays.copyOf(kids, 2 * count);
+			}
+			System.arraycopy(first, at, first, at + 1, count - at);
+			System.arraycopy(kids, at, kids, at + 1, count - at);
+			first[at] = kid.label[0];
+			kids[at] = kid;
+			count++;
+		}
+	}
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final Node root = new Node(EMPTY);
+	private int size;
+
+	/* copy of the current key, reused between calls */
+	private byte[] scratch = new byte[64];
+
+	public int size() {
+		return size;
+	}
+
+	public void insert(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		insert(b, 0, b.length);
+	}
+
+	public void insert(ByteBuffer buf, int off, int len) {
+		if (len > scratch.length) scratch = new byte[Math.max(len, 2 * scratch.length)];
+		buf.get(off, scratch, 0, len);
+		insert(scratch, 0, len);
+	}
+
+	/** add the UTF-8 key b[off, off + len). returns false if it was
+	 * already present */
+	public boolean insert(byte[] b, int off, int len) {
+		int end = off + len;
+		Node n = root;
+		int i = off;
+		while (i < end) {
+			int k = n.find(b[i]);
+			if (k < 0) {
+				/* nothing starts with this byte: hang the rest of the key here */
+				Node leaf = new Node(Arrays.copyOfRange(b, i, end));
+				leaf.terminal = true;
+				n.add(-k - 1, leaf);
+				size++;
+				return true;
+			}
+			Node child = n.kids[k];
+			byte[] label = child.label;
+			int m = Arrays.mismatch(label, 0, label.length, b, i, end);
+			if (m < 0 || m == label.length) {
+				/* the whole label matches: keep going below it */
+				n = child;
+				i += label.length;
+				continue;
+			}
+			/* the key leaves the label part way: split the edge at m */
+			Node mid = new Node(Arrays.copyOfRange(label, 0, m));
+			child.label = Arrays.copyOfRange(label, m, label.length);
+			mid.add(0, child);
+			n.kids[k] = mid;
+			i += m;
+			if (i == end) {
+				mid.terminal = true;
+			} else {
+				Node leaf = new Node(Arrays.copyOfRange(b, i, end));
+				leaf.terminal = true;
+				mid.add(-mid.find(b[i]) - 1, leaf); /* child's first byte differs from b[i] */
+			}
+			size++;
+			return true;
+		}
+		if (n.terminal) return false;
+		n.terminal = true;
+		size++;
+		return true;
+	}
+
+	public boolean contains(String w) {
+		byte[] b = w.getBytes(StandardCharsets.UTF_8);
+		return contains(b, 0, b.length);
+	}
+
+	/** return whether the UTF-8 key b[off, off + len) is present */
+	public boolean contains(byte[] b, int off, int len) {
+		int end = off + len;
+		Node n = root;
+		int i = off;
+		while (i < end) {
+			int k = n.find(b[i]);
+			if (k < 0) return false;
+			n = n.kids[k];
+			byte[] label = n.label;
+			if (end - i < label.length) return false;
+			if (!Arrays.equals(label, 0, label.length, b, i, i + label.length)) return false;
+			i += label.length;
+		}
+		return n.terminal;
+	}
+}
@@ -0,0 +1,200 @@
+package avl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/** Binary snapshots of an AVL, so a large set can be reloaded without
+ * reading and comparing its source text again.
+ *
+ * Layout, all integers big-endian:
+ *
+ *   0   magic "AVLS"
+ *   4   format version, currently 2
+ *   8   number of keys (int)
+ *   12  length of the key blob in bytes (long)
+ *   20  CRC32C of the key blob followed by header bytes 8-19 (int)
+ *   24  the key blob: each key's UTF-8 length as an unsigned LEB128
+ *       varint, then its bytes, in sorted order
+ *
+ * The key count is all the metadata the shape needs: reload rebuilds the
+ * perfectly balanced tree fromSorted would, straight from the sorted keys
+ * with no comparisons, in O(n). The blob is memory-mapped, one window at
+ * a time past 256MB, and its checksum verified before anything is built.
+ * The checksum also covers the key count and blob length, and the keys
+ * must use up the blob exactly, so a damaged count can't load as a
+ * truncated tree.
+ *
+ * A snapshot is written to a temporary file next to the target and moved
+ * into place, so a crash part way leaves any older snapshot intact. */
+public final class Snapshot {
+
+	/** "AVLS" */
+	public static final int MAGIC = 0x41564C53;
+
+	/** the format version written, and the only one read */
+	public static final int VERSION = 2;
+
+	static final int HEADER = 24;
+
+	/* size of each mapping over the blob on reload; keys longer than
+	 * this get a mapping of their own */
+	static final int WINDOW = 1 << 28;
+
+	private Snapshot() { }
+
+	/** write the words of a to f, replacing f if it exists. the temporary
+	 * file is removed if the write fails */
+	public static void write(AVL a, Path f) throws IOException {
+		Path tmp = f.resolveSibling(f.getFileName() + ".tmp");
+		CRC32C crc = new CRC32C();
+		long blob = 0;
+		int count = 0;
+		try {
+			try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+				ch.position(HEADER);
+				for (String w : a) {
+					byte[] b = w.getBytes(StandardCharsets.UTF_8);
+					if (buf.remaining() < 5 + b.length) {
+						blob += flush(ch, buf, crc);
+						if (buf.capacity() < 5 + b.length) buf = ByteBuffer.allocate(5 + b.length);
+					}
+					for (int len = b.length; ; len >>>= 7) {
+						if (len < 0x80) {
+							buf.put((byte) len);
+							break;
+						}
+						buf.put((byte) (len | 0x80));
+					}
+					buf.put(b);
+					count++;
+				}
+				blob += flush(ch, buf, crc);
+
+				ByteBuffer h = ByteBuffer.allocate(HEADER);
+				h.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(blob);
+				crc.update(h.array(), 8, 12);
+				h.putInt((int) crc.getValue());
+				h.flip();
+				while (h.hasRemaining()) ch.write(h, h.position());
+				ch.force(true);
+			}
+			Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException exc) {
+			try {
+				Files.deleteIfExists(tmp);
+			} catch (IOException again) {
+				exc.addSuppressed(again);
+			}
+			throw exc;
+		}
+	}
+
+	/* write out and checksum the buffered bytes, leaving buf empty.
+	 * returns the number of bytes written */
+	private static int flush(FileChannel ch, ByteBuffer buf, CRC32C crc) throws IOException {
+		buf.flip();
+		int n = buf.remaining();
+		crc.update(buf.duplicate());
+		while (buf.hasRemaining()) ch.write(buf);
+		buf.clear();
+		return n;
+	}
+
+	/** read a tree written by write. throws IOException if f is not a
+	 * snapshot, has another version or fails its checksum */
+	public static AVL read(Path f) throws IOException {
+		try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+			ByteBuffer h = ByteBuffer.allocate(HEADER);
+			while (h.hasRemaining() && ch.read(h, h.position()) > 0) { }
+			if (h.hasRemaining() || h.getInt(0) != MAGIC) {
+				throw new IOException(f + " is not an AVL snapshot");
+			}
+			int version = h.getInt(4);
+			if (version != VERSION) {
+				throw new IOException(f + " has snapshot version " + version + ", expected " + VERSION);
+			}
+			int count = h.getInt(8);
+			long end = HEADER + h.getLong(12);
+			if (count < 0 || end < HEADER || end != ch.size()) {
+				throw new IOException(f + " is truncated or corrupt");
+			}
+			/* every key takes at least its one length byte */
+			if (count > end - HEADER) {
+				throw new IOException(f + " is corrupt: " + count + " keys in " + (end - HEADER) + " bytes");
+			}
+
+			CRC32C crc = new CRC32C();
+			for (long pos = HEADER; pos < end; pos += WINDOW) {
+				crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, end - pos)));
+			}
+			crc.update(h.array(), 8, 12);
+			if ((int) crc.getValue() != h.getInt(20)) {
+				throw new IOException(f + " fails its checksum");
+			}
+
+			Blob in = new Blob(ch, end);
+			String[] words = new String[count];
+			byte[] scratch = new byte[256];
+			for (int i = 0; i < count; i++) {
+				int len = 0;
+				for (int shift = 0; ; shift += 7) {
+					byte b = in.get();
+					len |= (b & 0x7f) << shift;
+					if (b >= 0) break;
+					if (shift == 28) throw new IOException(f + " is corrupt: bad key length");
+				}
+				if (len < 0) throw new IOException(f + " is corrupt: bad key length");
+				if (len > scratch.length) scratch = new byte[Math.max(len, 2 * scratch.length)];
+				in.get(scratch, len);
+				words[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+			}
+			if (in.pos != end) {
+				throw new IOException(f + " is corrupt: " + (end - in.pos) + " bytes after the last key");
+			}
+			return AVL.fromSortedDistinct(Arrays.asList(words));
+		}
+	}
+
+	/* reads the blob sequentially through a sliding mapping */
+	private static class Blob {
+		private final FileChannel ch;
+		private final long end;
+		private MappedByteBuffer map;
+		private long base; /* file offset of map's first byte */
+		private long pos = HEADER;
+
+		Blob(FileChannel ch, long end) {
+			this.ch = ch;
+			this.end = end;
+		}
+
+		/* map at least need bytes starting at pos */
+		private void remap(int need) throws IOException {
+			if (pos + need > end) throw new IOException("snapshot is corrupt: key runs past the end");
+			base = pos;
+			map = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.max(need, Math.min(WINDOW, end - pos)));
+		}
+
+		byte get() throws IOException {
+			if (map == null || pos >= base + map.limit()) remap(1);
+			return map.get((int) (pos++ - base));
+		}
+
+		void get(byte[] dst, int len) throws IOException {
+			if (map == null || pos + len > base + map.limit()) remap(len);
+			map.get((int) (pos - base), dst, 0, len);
+			pos += len;
+		}
+	}
+}
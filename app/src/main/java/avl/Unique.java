@@ -2,53 +2,201 @@ package avl;
 
 import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 public class Unique {
 
     /** Main program: prints the number of unique lines in a given file by one
-     * of two methods */
+     * of several methods */
 	public static void main(String[] args) {
-		if (args.length != 2) {
-			System.out.println("Requires 2 arguments: naive or avl and a filename.");
+		if (args.length < 2) {
+			System.out.println("Requires 2 arguments: naive, avl, mmap, sorted, parallel, approx, stream, topk, diff, save, load or an engine, and a filename.");
+			System.out.println("Engines: compact, offheap, radix, hash, packed or btree.");
+			System.out.println("parallel takes an optional thread count as a third argument.");
+			System.out.println("approx takes an optional precision (" + HyperLogLog.MIN_PRECISION + "-"
+				+ HyperLogLog.MAX_PRECISION + ", default " + HyperLogLog.DEFAULT_PRECISION
+				+ ") and thread count as third and fourth arguments.");
+			System.out.println("stream reads a pipe, FIFO or file as it grows (- for stdin), reporting progress");
+			System.out.println("  to stderr; it takes an optional interval in ms and engine (avl or one of the engines,");
+			System.out.println("  default " + STREAM_ENGINE + ") as third and fourth arguments.");
+			System.out.println("topk prints the N most frequent lines with their counts; N is an optional third argument, default 10.");
+			System.out.println("diff takes a second filename as a third argument.");
+			System.out.println("save writes a snapshot of the distinct lines to the file given as a third argument;");
+			System.out.println("  load counts the lines of such a snapshot.");
 			return;
 		}
 		try {
+			if (args[0].equals("stream")) {
+				long interval = numberArg(args, 2, "report interval", 1000, 1, Long.MAX_VALUE);
+				DedupSet seen = newSet((args.length > 3) ? args[3] : STREAM_ENGINE);
+				if (seen == null) {
+					System.out.println("Unknown engine " + args[3]);
+					return;
+				}
+				InputStream in = args[1].equals("-") ? System.in : new FileInputStream(args[1]);
+				try {
+					System.out.println("Streaming unique lines from " + (args[1].equals("-") ? "stdin" : args[1]) + ":");
+					System.out.println(streamUnique(in, seen, interval, System.err));
+				} finally {
+					in.close();
+					seen.close();
+				}
+				if (AVLMetrics.ENABLED) System.err.println(AVLMetrics.snapshot());
+				return;
+			}
 			File f = new File(args[1]);
-			Scanner sc = new Scanner(f);
-			System.out.println("Finding unique lines in " + args[1]);
+			if (!f.isFile()) {
+				System.out.println("Could not find file " + args[1]);
+				return;
+			}
+			if (!args[0].equals("load")) System.out.println("Finding unique lines in " + args[1]);
 			if (args[0].equals("naive")) {
 				System.out.println("Naive:");
-				System.out.println(naiveUnique(sc));
+				try (Scanner sc = new Scanner(f)) {
+					System.out.println(naiveUnique(sc));
+				}
 			} else if(args[0].equals("avl")) {
 				System.out.println("AVL:");
-				System.out.println(avlUnique(sc));
+				try (Scanner sc = new Scanner(f)) {
+					System.out.println(avlUnique(sc));
+				}
+			} else if(args[0].equals("mmap")) {
+				System.out.println("AVL (memory-mapped):");
+				System.out.println(avlUnique(f.toPath()));
+			} else if(ENGINES.contains(args[0])) {
+				System.out.println("Engine " + args[0] + ":");
+				System.out.println(setUnique(args[0], f.toPath()));
+			} else if(args[0].equals("sorted")) {
+				System.out.println("Sort then build AVL:");
+				System.out.println(sortedUnique(f.toPath()));
+			} else if(args[0].equals("parallel")) {
+				int threads = (int) numberArg(args, 2, "thread count", Runtime.getRuntime().availableProcessors(), 1, MAX_THREADS);
+				System.out.println("Parallel AVL (" + threads + " threads):");
+				System.out.println(parallelUnique(f.toPath(), threads));
+			} else if(args[0].equals("approx")) {
+				int precision = (int) numberArg(args, 2, "precision", HyperLogLog.DEFAULT_PRECISION,
+					HyperLogLog.MIN_PRECISION, HyperLogLog.MAX_PRECISION);
+				int threads = (int) numberArg(args, 3, "thread count", Runtime.getRuntime().availableProcessors(), 1, MAX_THREADS);
+				System.out.println("HyperLogLog estimate (precision " + precision + ", " + threads + " threads):");
+				HyperLogLog hll = approxUnique(f.toPath(), precision, threads);
+				long e = hll.estimate();
+				double err = hll.standardError();
+				System.out.printf("%d +/- %d (%.2f%% standard error; 95%% within %d..%d)%n",
+					e, Math.round(e * err), 100 * err, Math.round(e * (1 - 2 * err)), Math.round(e * (1 + 2 * err)));
+			} else if(args[0].equals("topk")) {
+				int k = (int) numberArg(args, 2, "N", 10, 0, Integer.MAX_VALUE);
+				System.out.println("Top " + k + " lines by count:");
+				for (CountingAVL.Count n : topK(f.toPath(), k)) {
+					System.out.printf("%7d %s%n", n.count, n.word);
+				}
+			} else if(args[0].equals("save")) {
+				if (args.length < 3) {
+					System.out.println("save requires a snapshot filename.");
+					return;
+				}
+				AVL seen = avlOf(f.toPath());
+				seen.save(new File(args[2]).toPath());
+				System.out.println("Saved " + seen.getSize() + " unique lines to " + args[2]);
+			} else if(args[0].equals("load")) {
+				System.out.println("AVL (from snapshot):");
+				System.out.println(AVL.load(f.toPath()).getSize());
+			} else if(args[0].equals("diff")) {
+				if (args.length < 3) {
+					System.out.println("diff requires two filenames.");
+					return;
+				}
+				File g = new File(args[2]);
+				if (!g.isFile()) {
+					System.out.println("Could not find file " + args[2]);
+					return;
+				}
+				if (!g.canRead()) {
+					System.out.println("Could not read file " + args[2]);
+					return;
+				}
+				diff(f.toPath(), g.toPath(), System.out);
 			} else {
 				System.out.println("Running both avl and prefixes and timing them");
 				
 				System.out.println("AVL:");
 				
 				long ts = System.nanoTime();
-				System.out.println(avlUnique(sc));
+				try (Scanner sc = new Scanner(f)) {
+					System.out.println(avlUnique(sc));
+				}
 				long tavl = System.nanoTime() - ts;
-			
-				sc = new Scanner(f);
 				
 				System.out.println("Naive:");
 				
 				ts = System.nanoTime();
-				System.out.println(naiveUnique(sc));
+				try (Scanner sc = new Scanner(f)) {
+					System.out.println(naiveUnique(sc));
+				}
 				long tnaive = System.nanoTime() - ts;
 
 				System.out.printf("  Results: \n\n    AVL:   %5.2fs \n\n    Naive: %5.2fs", (double)tavl / 1000000000.0, (double)tnaive / 1000000000.0);
 			}
+			if (AVLMetrics.ENABLED) System.err.println(AVLMetrics.snapshot());
 		} catch (FileNotFoundException exc) {
 			System.out.println("Could not find file " + args[1]);
+		} catch (IOException | UncheckedIOException exc) {
+			System.out.println("Could not read file " + args[1] + ": " + exc.getMessage());
+		} catch (BadArgument exc) {
+			System.out.println(args[0] + ": " + exc.getMessage());
+		}
+	}
+
+	/* the most threads parallel and approx will start, the cap ForkJoinPool
+	 * itself puts on its parallelism */
+	private static final int MAX_THREADS = 0x7fff;
+
+	/* a command line argument main can't use; reported without a stack trace */
+	private static class BadArgument extends IllegalArgumentException {
+		private static final long serialVersionUID = 1L;
+
+		BadArgument(String message) {
+			super(message);
 		}
 	}
 
+	/* the whole number args[i], or def if there are no more than i
+	 * arguments. throws BadArgument if it is not a number in [min, max] */
+	private static long numberArg(String[] args, int i, String name, long def, long min, long max) {
+		if (args.length <= i) return def;
+		long v;
+		try {
+			v = Long.parseLong(args[i]);
+		} catch (NumberFormatException exc) {
+			throw new BadArgument(name + " must be a whole number, not " + args[i]);
+		}
+		if (v < min) throw new BadArgument(name + " must be at least " + min + ", not " + args[i]);
+		if (v > max) throw new BadArgument(name + " must be at most " + max + ", not " + args[i]);
+		return v;
+	}
+
 	/** Return the number of unique lines availble to be read by sc */ 
-	private static int naiveUnique(Scanner sc) {
+	static int naiveUnique(Scanner sc) {
 		// unique lines seen so far
 		ArrayList<String> seen = new ArrayList<String>();
 		while (sc.hasNextLine()) {
@@ -67,7 +215,7 @@ public class Unique {
 	}
 
 	/** Return the number of unique lines availble to be read by sc */ 
-	private static int avlUnique(Scanner sc) {
+	static int avlUnique(Scanner sc) {
 		AVL seen = new AVL();
 		int count = 0;
 		while(sc.hasNextLine()){
@@ -75,4 +223,325 @@ public class Unique {
 		}
 		return seen.getSize();	
 	}
+
+	/** Return the number of unique lines in f, reading it through memory-mapped
+	 * windows instead of a Scanner. Lines are decoded straight from the mapped
+	 * bytes; no regex and no CharBuffer. */
+	static int avlUnique(Path f) throws IOException {
+		return avlOf(f).getSize();
+	}
+
+	/** Return an AVL holding the distinct lines of f, read through
+	 * memory-mapped windows */
+	static AVL avlOf(Path f) throws IOException {
+		AVL seen = new AVL();
+		try (LineReader r = new LineReader(f)) {
+			r.forEach(decoding(seen::avlInsert));
+		}
+		return seen;
+	}
+
+	/** Return the k most frequent lines of f, most frequent first and ties
+	 * in sorted order. One pass over f counts every line in a CountingAVL;
+	 * one in-order walk of the counts then feeds a heap that never holds
+	 * more than k entries, so picking them costs O(n log k) rather than a
+	 * sort of all n. */
+	static List<CountingAVL.Count> topK(Path f, int k) throws IOException {
+		CountingAVL counts = new CountingAVL();
+		try (LineReader r = new LineReader(f)) {
+			r.forEach(decoding(counts::add));
+		}
+		return topK(counts, k);
+	}
+
+	/* the comparator ranking least frequent first, and among equal counts
+	 * the later word first: the head of the heap is the next to drop */
+	private static final Comparator<CountingAVL.Count> RANK =
+		Comparator.comparingLong((CountingAVL.Count c) -> c.count).thenComparing(c -> c.word, Comparator.reverseOrder());
+
+	/** the k most frequent words of counts, as topK(Path, int) */
+	static List<CountingAVL.Count> topK(CountingAVL counts, int k) {
+		if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+		PriorityQueue<CountingAVL.Count> heap = new PriorityQueue<CountingAVL.Count>(Math.max(1, Math.min(k, counts.size())), RANK);
+		if (k > 0) {
+			counts.forEach((w, c) -> {
+				if (heap.size() < k) {
+					heap.add(new CountingAVL.Count(w, c));
+				} else if (c > heap.peek().count) {
+					/* words come in sorted order, so a tie never displaces
+					 * the head: the head's word is the smaller */
+					heap.poll();
+					heap.add(new CountingAVL.Count(w, c));
+				}
+			});
+		}
+		ArrayList<CountingAVL.Count> top = new ArrayList<CountingAVL.Count>(heap);
+		top.sort(RANK.reversed());
+		return top;
+	}
+
+	/** The engine stream uses unless told otherwise. Lines arrive as
+	 * bytes and most are short, so PackedAVL compares them as longs;
+	 * longer lines go to its overflow tree without changing the count. */
+	static final String STREAM_ENGINE = "packed";
+
+	/** Names of the DedupSet engines newSet knows */
+	static final List<String> ENGINES = Arrays.asList("compact", "offheap", "radix", "hash", "packed", "btree");
+
+	/** Return a new, empty set for the named engine, one of ENGINES or
+	 * avl for a plain AVL. Returns null for any other name. */
+	static DedupSet newSet(String engine) {
+		switch (engine) {
+			case "avl": return new AVL();
+			case "compact": return new CompactAVL(1 << 16);
+			case "offheap": return new OffHeapAVL();
+			case "radix": return new RadixTrie();
+			case "hash": return new ByteHashSet(1 << 16);
+			case "packed": return new PackedAVL(1 << 16);
+			case "btree": return new BPlusTree();
+			default: return null;
+		}
+	}
+
+	/** Return the number of unique lines in f using the named engine. Lines
+	 * go straight from the mapped file to the engine's byte insert. */
+	static int setUnique(String engine, Path f) throws IOException {
+		DedupSet seen = newSet(engine);
+		try (LineReader r = new LineReader(f)) {
+			r.forEach(seen::insert);
+			return seen.size();
+		} finally {
+			seen.close();
+		}
+	}
+
+	/** Return the number of unique lines in f by reading every line, sorting
+	 * them and building the tree in one pass with AVL.fromSorted, instead
+	 * of rebalancing after each insertion. */
+	static int sortedUnique(Path f) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		try (LineReader r = new LineReader(f)) {
+			r.forEach(decoding(lines::add));
+		}
+		String[] sorted = lines.toArray(new String[0]);
+		Arrays.sort(sorted);
+		return AVL.fromSorted(sorted).getSize();
+	}
+
+	/** Wrap c as a LineReader consumer that decodes each line to a String.
+	 * The copy out of the mapping goes through one reused byte buffer. */
+	static LineReader.LineConsumer decoding(Consumer<String> c) {
+		return new LineReader.LineConsumer() {
+			private byte[] scratch = new byte[256];
+
+			public void line(MappedByteBuffer buf, int off, int len) {
+				if (len > scratch.length) {
+					scratch = new byte[Math.max(len, 2 * scratch.length)];
+				}
+				buf.get(off, scratch, 0, len);
+				c.accept(new String(scratch, 0, len, StandardCharsets.UTF_8));
+			}
+		};
+	}
+
+	/** Return the number of unique lines in f using the given number of
+	 * threads. The file is split into line-aligned byte ranges, each range
+	 * is deduplicated into its own AVL on a fork-join pool, and the sorted
+	 * contents of the trees are merged pairwise into the exact count. */
+	static int parallelUnique(Path f, int threads) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (LineReader r = new LineReader(f)) {
+			long[] bounds = r.split(threads);
+			return pool.invoke(new RangeUnique(r, bounds, 0, bounds.length - 1)).length;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/* the distinct lines, in sorted order, of ranges [lo, hi) of a file */
+	private static class RangeUnique extends RecursiveTask<String[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final LineReader reader;
+		private final long[] bounds;
+		private final int lo, hi;
+
+		RangeUnique(LineReader reader, long[] bounds, int lo, int hi) {
+			this.reader = reader;
+			this.bounds = bounds;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		protected String[] compute() {
+			if (hi - lo == 1) {
+				AVL seen = new AVL();
+				try {
+					reader.forEach(bounds[lo], bounds[hi], decoding(seen::avlInsert));
+				} catch (IOException exc) {
+					throw new UncheckedIOException(exc);
+				}
+				return seen.toArray();
+			}
+			int mid = (lo + hi) >>> 1;
+			RangeUnique left = new RangeUnique(reader, bounds, lo, mid);
+			left.fork();
+			String[] right = new RangeUnique(reader, bounds, mid, hi).compute();
+			return mergeDistinct(left.join(), right);
+		}
+	}
+
+	/** Return a HyperLogLog sketch of the lines of f with the given
+	 * precision. As in parallelUnique the file is split into line-aligned
+	 * ranges, one per thread; each range gets its own sketch and the
+	 * sketches are merged, so memory stays at threads * 2^precision bytes
+	 * whatever the size of f. */
+	static HyperLogLog approxUnique(Path f, int precision, int threads) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (LineReader r = new LineReader(f)) {
+			long[] bounds = r.split(threads);
+			return pool.invoke(new RangeSketch(r, bounds, 0, bounds.length - 1, precision));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/* the merged sketch of ranges [lo, hi) of a file */
+	private static class RangeSketch extends RecursiveTask<HyperLogLog> {
+		private static final long serialVersionUID = 1L;
+
+		private final LineReader reader;
+		private final long[] bounds;
+		private final int lo, hi;
+		private final int precision;
+
+		RangeSketch(LineReader reader, long[] bounds, int lo, int hi, int precision) {
+			this.reader = reader;
+			this.bounds = bounds;
+			this.lo = lo;
+			this.hi = hi;
+			this.precision = precision;
+		}
+
+		protected HyperLogLog compute() {
+			if (hi - lo == 1) {
+				HyperLogLog hll = new HyperLogLog(precision);
+				try {
+					reader.forEach(bounds[lo], bounds[hi], hll::add);
+				} catch (IOException exc) {
+					throw new UncheckedIOException(exc);
+				}
+				return hll;
+			}
+			int mid = (lo + hi) >>> 1;
+			RangeSketch left = new RangeSketch(reader, bounds, lo, mid, precision);
+			left.fork();
+			HyperLogLog right = new RangeSketch(reader, bounds, mid, hi, precision).compute();
+			right.merge(left.join());
+			return right;
+		}
+	}
+
+	/* merge two sorted arrays of distinct strings, keeping one copy of
+	 * strings found in both */
+	static String[] mergeDistinct(String[] a, String[] b) {
+		String[] out = new String[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length && j < b.length) {
+			int c = a[i].compareTo(b[j]);
+			if (c < 0) out[k++] = a[i++];
+			else if (c > 0) out[k++] = b[j++];
+			else {
+				out[k++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) out[k++] = a[i++];
+		while (j < b.length) out[k++] = b[j++];
+		return (k == out.length) ? out : Arrays.copyOf(out, k);
+	}
+
+	/** Read lines from in until it ends, inserting each into seen, and
+	 * return the number of distinct lines. Lines are split on '\n' with a
+	 * trailing '\r' dropped, as LineReader does, and handed to seen as
+	 * slices of the read buffer.
+	 *
+	 * Every interval milliseconds a background thread prints the lines
+	 * read so far, the distinct count and the line rate over the last
+	 * interval to report. The ingest loop only publishes its two counters
+	 * with ordered stores after each read, so a slow report stream never
+	 * holds it up. */
+	static int streamUnique(InputStream in, DedupSet seen, long interval, PrintStream report) throws IOException {
+		AtomicLong lines = new AtomicLong(), distinct = new AtomicLong();
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "unique-report");
+			t.setDaemon(true);
+			return t;
+		});
+		long t0 = System.nanoTime();
+		timer.scheduleAtFixedRate(new Runnable() {
+			private long lastLines, lastTime = t0;
+
+			public void run() {
+				long now = System.nanoTime(), n = lines.getAcquire();
+				report.printf(Locale.ROOT, "[%.1fs] %d lines, %d unique, %.0f lines/s%n", (now - t0) / 1e9, n,
+					distinct.getAcquire(), (n - lastLines) * 1e9 / Math.max(now - lastTime, 1));
+				lastLines = n;
+				lastTime = now;
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		long count = 0;
+		try {
+			byte[] buf = new byte[1 << 16];
+			ByteBuffer view = ByteBuffer.wrap(buf);
+			int start = 0, end = 0; /* buf[start, end) is a partial line */
+			for (;;) {
+				if (end == buf.length) {
+					if (start > 0) {
+						System.arraycopy(buf, start, buf, 0, end - start);
+						end -= start;
+						start = 0;
+					} else {
+						/* a single line longer than the buffer */
+						buf = Arrays.copyOf(buf, 2 * buf.length);
+						view = ByteBuffer.wrap(buf);
+					}
+				}
+				int n = in.read(buf, end, buf.length - end);
+				if (n < 0) break;
+				for (int i = end; i < end + n; i++) {
+					if (buf[i] == '\n') {
+						int len = (i > start && buf[i - 1] == '\r') ? i - 1 - start : i - start;
+						seen.insert(view, start, len);
+						count++;
+						start = i + 1;
+					}
+				}
+				end += n;
+				lines.setRelease(count);
+				distinct.setRelease(seen.size());
+			}
+			if (start < end) {
+				/* final line with no newline after it */
+				seen.insert(view, start, (buf[end - 1] == '\r') ? end - 1 - start : end - start);
+				count++;
+			}
+		} finally {
+			timer.shutdownNow();
+		}
+		double secs = (System.nanoTime() - t0) / 1e9;
+		report.printf(Locale.ROOT, "[%.1fs] done: %d lines, %d unique, %.0f lines/s%n", secs, count, seen.size(), count / secs);
+		return seen.size();
+	}
+
+	/** Print to out how many distinct lines are only in a, only in b and
+	 * in both */
+	static void diff(Path a, Path b, PrintStream out) throws IOException {
+		AVL ta = avlOf(a), tb = avlOf(b);
+		int na = ta.getSize(), nb = tb.getSize();
+		int both = AVL.intersection(ta, tb).getSize();
+		out.println("Only in " + a + ": " + (na - both));
+		out.println("Only in " + b + ": " + (nb - both));
+		out.println("In both: " + both);
+	}
 }
@@ -0,0 +1,89 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class AVLMetricsTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test the counters follow a small known sequence of operations */
+  public void test00counts() {
+    Assume.assumeTrue("run with -Davl.metrics=true", AVLMetrics.ENABLED);
+    AVLMetrics.reset();
+    AVL a = new AVL();
+    a.avlInsert("a");
+    a.avlInsert("b");
+    a.avlInsert("c"); // one left rotation at the root
+    a.avlInsert("b"); // already present
+    AVLMetrics m = AVLMetrics.snapshot();
+    assertEquals(4, m.inserts());
+    assertEquals(3, m.descents); // the first insert has nothing to descend
+    assertEquals(1 + 2 + 1, m.comparisons);
+    assertEquals(2, m.maxDepth);
+    assertEquals(1, m.leftRotations);
+    assertEquals(0, m.rightRotations);
+    assertEquals(1, m.rebalances);
+    assertEquals(1 + 2, m.retraceSteps);
+
+    a.avlInsert("0");
+    a.avlInsert("00"); // a double rotation at "a"
+    a.search("zzz");
+    m = AVLMetrics.snapshot();
+    assertEquals(2, m.leftRotations);
+    assertEquals(1, m.rightRotations);
+    assertEquals(2, m.rebalances);
+    assertEquals(6, m.descents);
+    assertEquals(6, m.inserts());
+    assertTrue(m.toString().contains("6 inserts timed"));
+  }
+
+  @Test
+  /** Test latency quantiles come from the histogram buckets */
+  public void test10latency() {
+    Assume.assumeTrue("run with -Davl.metrics=true", AVLMetrics.ENABLED);
+    AVLMetrics.reset();
+    assertEquals(0, AVLMetrics.snapshot().latencyQuantile(0.5));
+    AVL a = new AVL();
+    for (int i = 0; i < 1000; i++) {
+      a.avlInsert(Integer.toString(i));
+    }
+    AVLMetrics m = AVLMetrics.snapshot();
+    long[] h = m.latencyHistogram();
+    long total = 0;
+    for (long c : h) {
+      total += c;
+    }
+    assertEquals(1000, total);
+    assertTrue(m.latencyQuantile(0.5) <= m.latencyQuantile(0.99));
+    assertTrue(m.latencyQuantile(0.5) > 0);
+    assertTrue(m.meanDepth() > 1 && m.maxDepth <= 15);
+  }
+
+  @Test
+  /** Test comparisons outside plain descents are counted too */
+  public void test20comparisons() {
+    Assume.assumeTrue("run with -Davl.metrics=true", AVLMetrics.ENABLED);
+    AVL a = AVL.fromSorted(new String[] {"a", "b", "b", "c", "d", "e", "f", "g"});
+    AVLMetrics.reset();
+    AVL.fromSorted(new String[] {"a", "b", "c"});
+    assertEquals(2, AVLMetrics.snapshot().comparisons);
+
+    AVLMetrics.reset();
+    assertEquals(2, a.countRange("b", "c"));
+    AVLMetrics m = AVLMetrics.snapshot();
+    assertEquals(0, m.descents);
+    assertTrue(m.comparisons > 2);
+
+    AVLMetrics.reset();
+    assertEquals(2, a.insertAll(new String[] {"cc", "h", "a"}));
+    m = AVLMetrics.snapshot();
+    assertEquals(0, m.descents);
+    assertTrue(m.comparisons >= 3);
+  }
+}
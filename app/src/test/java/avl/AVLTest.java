@@ -3,7 +3,14 @@ package avl;
 import static org.junit.Assert.*;
 import org.junit.FixMethodOrder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -85,6 +92,13 @@ public class AVLTest {
     }
     return -1;
   }
+  private static int getSize(AVL.Node n) {
+    if (n != null) {
+      return n.size;
+    }
+    return 0;
+  }
+
   private static void checkWithHeight(AVL.Node n) {
     if (n == null) {
       return;
@@ -93,6 +107,8 @@ public class AVLTest {
     // check that h = 1 + max child height
     int h = 1 + Math.max(getHeight(n.left), getHeight(n.right));
     assertEquals(h, n.height);
+    // and that the subtree size is 1 + the children's sizes
+    assertEquals(1 + getSize(n.left) + getSize(n.right), n.size);
     if (n.left != null) {
       assertEquals(n.left.parent, n);
     }
@@ -596,6 +612,386 @@ public class AVLTest {
 
   }
 
+  private static void checkBalanced(AVL.Node n) {
+    if (n == null) {
+      return;
+    }
+    int b = getHeight(n.right) - getHeight(n.left);
+    assertTrue(b >= -1 && b <= 1);
+    checkBalanced(n.left);
+    checkBalanced(n.right);
+  }
 
+  @Test
+  /** Test avlInsert keeps heights and balance correct on sorted and
+   * repeated input */
+  public void test63avlInsert() {
+    AVL a = new AVL();
+    for (int i = 0; i < 10000; i++) {
+      a.avlInsert(String.format("%05d", i));
+      a.avlInsert(String.format("%05d", i / 2));
+    }
+    assertEquals(10000, a.getSize());
+    checkWithHeight(a);
+    checkBalanced(a.root);
+    // AVL height bound: at most 1.44 lg(n + 2)
+    assertTrue(a.root.height <= 19);
+    assertNotNull(a.search("04242"));
+    assertNull(a.search("10000"));
+  }
 
+  @Test
+  /** Test fromSorted builds a balanced tree and drops duplicates */
+  public void test70fromSorted() {
+    AVL a = AVL.fromSorted(new String[] {});
+    assertEquals(null, a.root);
+    assertEquals(0, a.getSize());
+
+    a = AVL.fromSorted(new String[] {"a", "b", "b", "c", "d", "e", "e", "f"});
+    assertEquals(6, a.getSize());
+    checkWithHeight(a);
+    checkBalanced(a.root);
+    treeEquals(a, "d b a c f e", "a b c d e f", "a c b e f d");
+
+    String[] words = new String[5000];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = String.format("%05d", i);
+    }
+    a = AVL.fromSorted(Arrays.asList(words).iterator());
+    assertEquals(5000, a.getSize());
+    checkWithHeight(a);
+    checkBalanced(a.root);
+    assertEquals(12, a.root.height);
+
+    // still a valid AVL tree for later insertions
+    a.avlInsert("99999");
+    a.avlInsert("00000");
+    assertEquals(5001, a.getSize());
+    checkWithHeight(a);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test fromSorted rejects unsorted input */
+  public void test71fromSortedUnsorted() {
+    AVL.fromSorted(new String[] {"a", "c", "b"});
+  }
+
+  private static AVL randomTree(TreeSet<String> words, int n, int range, long seed) {
+    AVL a = new AVL();
+    Random r = new Random(seed);
+    for (int i = 0; i < n; i++) {
+      String w = Integer.toString(r.nextInt(range));
+      a.avlInsert(w);
+      words.add(w);
+    }
+    return a;
+  }
+
+  private static void checkSet(TreeSet<String> expect, AVL a) {
+    checkWithHeight(a);
+    checkBalanced(a.root);
+    assertEquals(expect.size(), a.getSize());
+    assertEquals(String.join(" ", expect), inOrder(a.root));
+  }
+
+  @Test
+  /** Test split and join */
+  public void test80splitJoin() {
+    AVL a = new AVL();
+    for (String w : "m f t c h p w a d g k n r u z".split(" ")) {
+      a.avlInsert(w);
+    }
+    AVL[] parts = a.split("k");
+    assertEquals(null, a.root);
+    checkWithHeight(parts[0]);
+    checkBalanced(parts[0].root);
+    checkWithHeight(parts[1]);
+    checkBalanced(parts[1].root);
+    assertEquals("a c d f g h", inOrder(parts[0].root));
+    assertEquals("m n p r t u w z", inOrder(parts[1].root));
+    assertEquals(6, parts[0].getSize());
+
+    AVL b = AVL.join(parts[0], "j", parts[1]);
+    checkWithHeight(b);
+    checkBalanced(b.root);
+    assertEquals("a c d f g h j m n p r t u w z", inOrder(b.root));
+    assertEquals(15, b.getSize());
+
+    // join trees of very different heights
+    AVL small = new AVL();
+    small.avlInsert("0");
+    AVL big = new AVL();
+    for (int i = 0; i < 1000; i++) {
+      big.avlInsert(String.format("b%04d", i));
+    }
+    AVL c = AVL.join(small, "a", big);
+    checkWithHeight(c);
+    checkBalanced(c.root);
+    assertEquals(1002, c.getSize());
+    c.avlInsert("c");
+    assertEquals(1003, c.getSize());
+  }
+
+  @Test
+  /** Test union, intersection and difference against TreeSet */
+  public void test81setOps() {
+    for (int[] sizes : new int[][] {{0, 50}, {50, 0}, {3, 500}, {500, 3}, {300, 300}, {20000, 15000}}) {
+      TreeSet<String> sa = new TreeSet<String>(), sb = new TreeSet<String>();
+      randomTree(sa, sizes[0], 30000, 1);
+      randomTree(sb, sizes[1], 30000, 2);
+
+      TreeSet<String> expect = new TreeSet<String>(sa);
+      expect.addAll(sb);
+      AVL a = randomTree(new TreeSet<String>(), sizes[0], 30000, 1);
+      AVL b = randomTree(new TreeSet<String>(), sizes[1], 30000, 2);
+      checkSet(expect, AVL.union(a, b));
+      assertEquals(0, a.getSize());
+      assertEquals(null, b.root);
+
+      expect = new TreeSet<String>(sa);
+      expect.retainAll(sb);
+      a = randomTree(new TreeSet<String>(), sizes[0], 30000, 1);
+      b = randomTree(new TreeSet<String>(), sizes[1], 30000, 2);
+      checkSet(expect, AVL.intersection(a, b));
+
+      expect = new TreeSet<String>(sa);
+      expect.removeAll(sb);
+      a = randomTree(new TreeSet<String>(), sizes[0], 30000, 1);
+      b = randomTree(new TreeSet<String>(), sizes[1], 30000, 2);
+      checkSet(expect, AVL.difference(a, b));
+    }
+  }
+
+  @Test
+  /** Test rank, select and countRange against TreeSet */
+  public void test90orderStatistics() {
+    TreeSet<String> words = new TreeSet<String>();
+    AVL a = randomTree(words, 3000, 5000, 3);
+    checkWithHeight(a);
+    String[] sorted = words.toArray(new String[0]);
+    for (int k = 0; k < sorted.length; k++) {
+      assertEquals(sorted[k], a.select(k));
+      assertEquals(k, a.rank(sorted[k]));
+    }
+    assertEquals(0, a.rank(""));
+    assertEquals(sorted.length, a.rank("a"));
+    assertEquals(words.headSet("25").size(), a.rank("25"));
+
+    String[][] ranges = {{"1", "2"}, {"100", "1000"}, {"", "z"}, {"3", "3"},
+      {sorted[7], sorted[7]}, {"5", "4"}, {sorted[10], sorted[20]}};
+    for (String[] r : ranges) {
+      int expect = (r[0].compareTo(r[1]) > 0) ? 0 : words.subSet(r[0], true, r[1], true).size();
+      assertEquals(expect, a.countRange(r[0], r[1]));
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  /** Test select rejects k past the end */
+  public void test91selectOutOfRange() {
+    AVL a = new AVL();
+    a.avlInsert("moo");
+    a.select(1);
+  }
+
+  private static List<String> drain(Iterator<String> it) {
+    List<String> out = new ArrayList<String>();
+    while (it.hasNext()) {
+      out.add(it.next());
+    }
+    return out;
+  }
+
+  @Test
+  /** Test scan and scanPrefix, both callback and iterator forms */
+  public void test95scan() {
+    AVL a = new AVL();
+    for (String w : "ant bee bed beg cat cow dog bea b".split(" ")) {
+      a.avlInsert(w);
+    }
+    List<String> got = new ArrayList<String>();
+    a.scanPrefix("be", got::add);
+    assertEquals(Arrays.asList("bea", "bed", "bee", "beg"), got);
+    assertEquals(got, drain(a.scanPrefix("be")));
+    assertEquals(Arrays.asList("b", "bea", "bed", "bee", "beg"), drain(a.scanPrefix("b")));
+    assertEquals(Arrays.asList(), drain(a.scanPrefix("bz")));
+    assertEquals(Arrays.asList(), drain(a.scanPrefix("zebra")));
+    assertEquals(9, drain(a.scanPrefix("")).size());
+
+    got.clear();
+    a.scan("bee", "cow", got::add);
+    assertEquals(Arrays.asList("bee", "beg", "cat", "cow"), got);
+    assertEquals(got, drain(a.scan("bee", "cow")));
+    assertEquals(Arrays.asList("cat", "cow"), drain(a.scan("c", "d")));
+    assertEquals(Arrays.asList(), drain(a.scan("d", "c")));
+    assertEquals(Arrays.asList("ant"), drain(a.scan("", "apple")));
+
+    // the same over a larger tree
+    TreeSet<String> words = new TreeSet<String>();
+    a = randomTree(words, 3000, 100000, 4);
+    assertEquals(new ArrayList<String>(words.subSet("2", true, "3", true)), drain(a.scan("2", "3")));
+    List<String> expect = new ArrayList<String>();
+    for (String w : words) {
+      if (w.startsWith("42")) {
+        expect.add(w);
+      }
+    }
+    assertEquals(expect, drain(a.scanPrefix("42")));
+  }
+
+  @Test
+  /** Test remove of leaves, one-child nodes, two-child nodes and the root */
+  public void test96remove() {
+    AVL a = new AVL();
+    for (String w : "m f t c h p w a d g k n r u z".split(" ")) {
+      a.avlInsert(w);
+    }
+    assertFalse(a.remove("b"));
+    assertTrue(a.remove("a"));
+    assertTrue(a.remove("c"));
+    assertTrue(a.remove("t"));
+    assertTrue(a.remove("m"));
+    assertFalse(a.remove("m"));
+    checkWithHeight(a);
+    checkBalanced(a.root);
+    assertEquals("d f g h k n p r u w z", inOrder(a.root));
+    assertEquals(11, a.getSize());
+    for (String w : "d f g h k n p r u w z".split(" ")) {
+      assertTrue(a.remove(w));
+      checkWithHeight(a);
+      checkBalanced(a.root);
+    }
+    assertEquals(null, a.root);
+    assertEquals(0, a.getSize());
+  }
+
+  @Test
+  /** Test random inserts and removes against TreeSet */
+  public void test97removeRandom() {
+    TreeSet<String> words = new TreeSet<String>();
+    AVL a = randomTree(words, 5000, 8000, 5);
+    Random r = new Random(6);
+    for (int i = 0; i < 10000; i++) {
+      String w = Integer.toString(r.nextInt(8000));
+      if (r.nextInt(3) == 0) {
+        a.avlInsert(w);
+        words.add(w);
+      } else {
+        assertEquals(words.remove(w), a.remove(w));
+      }
+    }
+    checkSet(words, a);
+  }
+
+  @Test
+  /** Test removeAll and removeRange against TreeSet */
+  public void test98removeBulk() {
+    TreeSet<String> words = new TreeSet<String>();
+    AVL a = randomTree(words, 5000, 8000, 7);
+    TreeSet<String> gone = new TreeSet<String>();
+    randomTree(gone, 2000, 10000, 8);
+    int present = 0;
+    for (String w : gone) {
+      if (words.remove(w)) {
+        present++;
+      }
+    }
+    String[] sorted = gone.toArray(new String[0]);
+    assertEquals(present, a.removeAll(sorted));
+    checkSet(words, a);
+    assertEquals(0, a.removeAll(sorted));
+
+    for (String[] range : new String[][] {{"2", "3"}, {"5", "4"}, {"77", "77"}, {"", "1"}, {"9", "a"}}) {
+      int expect = (range[0].compareTo(range[1]) > 0) ? 0 : words.subSet(range[0], true, range[1], true).size();
+      assertEquals(expect, a.removeRange(range[0], range[1]));
+      if (expect > 0) {
+        words.subSet(range[0], true, range[1], true).clear();
+      }
+      checkSet(words, a);
+    }
+  }
+
+  /* split sp recursively, checking each part's exact size, and append
+   * the parts' words in encounter order */
+  private static void splitAll(Spliterator<String> sp, List<String> out) {
+    long size = sp.getExactSizeIfKnown();
+    int before = out.size();
+    Spliterator<String> prefix = sp.trySplit();
+    if (prefix != null) {
+      assertEquals(size, prefix.getExactSizeIfKnown() + sp.getExactSizeIfKnown());
+      splitAll(prefix, out);
+      splitAll(sp, out);
+    } else {
+      sp.forEachRemaining(out::add);
+    }
+    assertEquals(size, out.size() - before);
+  }
+
+  @Test
+  /** Test iterator, spliterator splits and streams visit every word in order */
+  public void test99iterate() {
+    AVL a = new AVL();
+    assertFalse(a.iterator().hasNext());
+    assertEquals(0, a.stream().count());
+
+    TreeSet<String> words = new TreeSet<String>();
+    a = randomTree(words, 5000, 20000, 9);
+    List<String> expect = new ArrayList<String>(words);
+    List<String> got = new ArrayList<String>();
+    for (String w : a) {
+      got.add(w);
+    }
+    assertEquals(expect, got);
+
+    Spliterator<String> sp = a.spliterator();
+    assertTrue(sp.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED));
+    assertEquals(null, sp.getComparator());
+    got.clear();
+    splitAll(sp, got);
+    assertEquals(expect, got);
+
+    // a split-off part can be partly consumed before being split no further
+    sp = a.spliterator();
+    Spliterator<String> prefix = sp.trySplit();
+    assertTrue(prefix.tryAdvance(w -> assertEquals(expect.get(0), w)));
+    assertEquals(null, prefix.trySplit());
+    assertEquals(a.getSize() - 1, prefix.estimateSize() + sp.estimateSize());
+
+    assertEquals(expect, a.stream().parallel().collect(Collectors.toList()));
+    assertEquals(a.countRange("1", "2"), a.stream().parallel().filter(w -> w.startsWith("1")).count()
+        + (a.contains("2") ? 1 : 0));
+  }
+
+  @Test
+  /** Test insertAll against TreeSet with unsorted, duplicated batches of
+   * every size from empty to larger than the tree */
+  public void test100insertAll() {
+    AVL a = new AVL();
+    assertEquals(0, a.insertAll(new String[] {}));
+    String[] batch = {"moo", "baa", "moo", "quack", "baa"};
+    assertEquals(3, a.insertAll(batch));
+    assertEquals("moo", batch[0]); // batch is left as it was
+    assertEquals(0, a.insertAll(batch));
+    checkSet(new TreeSet<String>(Arrays.asList(batch)), a);
+
+    TreeSet<String> words = new TreeSet<String>();
+    a = randomTree(words, 3000, 20000, 10);
+    Random r = new Random(11);
+    for (int size : new int[] {1, 2, 10, 100, 1000, 10000}) {
+      String[] b = new String[size];
+      int added = 0;
+      for (int i = 0; i < size; i++) {
+        b[i] = Integer.toString(r.nextInt(20000));
+        if (words.add(b[i])) {
+          added++;
+        }
+      }
+      assertEquals(added, a.insertAll(b));
+      checkSet(words, a);
+    }
+
+    // still a valid AVL tree for single inserts and removes
+    a.avlInsert("x");
+    assertTrue(a.remove("x"));
+    checkSet(words, a);
+  }
 }
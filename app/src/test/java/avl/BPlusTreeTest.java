@@ -0,0 +1,117 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class BPlusTreeTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* every word of b, in order, by scanning all leaves */
+  private static List<String> all(BPlusTree b) {
+    List<String> out = new ArrayList<String>();
+    b.scan("", "\uffff\uffff\uffff\uffff\uffff", out::add);
+    return out;
+  }
+
+  @Test
+  /** Test an empty tree, duplicates and a bad fanout */
+  public void test00small() {
+    BPlusTree b = new BPlusTree();
+    assertEquals(0, b.size());
+    assertFalse(b.contains(""));
+    assertEquals(1, b.height());
+    assertTrue(b.add("moo"));
+    assertFalse(b.add("moo"));
+    b.insert("moo");
+    assertEquals(1, b.getSize());
+    assertTrue(b.contains("moo"));
+    assertFalse(b.contains("mo"));
+    assertFalse(b.contains("moo\u0000"));
+    try {
+      new BPlusTree(2);
+      fail("fanout 2 accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  /** Test words sharing their first four chars and \0 padding */
+  public void test10prefixTies() {
+    String[] words = {"", "a", "ab", "ab\u0000", "ab\u0000\u0000\u0000", "abcd", "abcde", "abcdf",
+      "abcd\u0000", "\uffff", "\ud83d\ude00x", "\ue000", "moo", "quack"};
+    BPlusTree b = new BPlusTree(3);
+    TreeSet<String> expected = new TreeSet<String>();
+    for (String w : words) {
+      b.add(w);
+      expected.add(w);
+    }
+    assertEquals(words.length, b.size());
+    assertTrue(b.height() > 1);
+    for (String w : words) {
+      assertTrue(w, b.contains(w));
+    }
+    for (String w : new String[] {"ab\u0000\u0000", "abc", "abcdg", "\ud83d", "b"}) {
+      assertFalse(w, b.contains(w));
+    }
+    assertEquals(new ArrayList<String>(expected), all(b));
+  }
+
+  @Test
+  /** Test against TreeSet in random and sorted order for several fanouts */
+  public void test20random() {
+    for (int fanout : new int[] {3, 4, 16, 64}) {
+      Random r = new Random(fanout);
+      BPlusTree b = new BPlusTree(fanout);
+      TreeSet<String> words = new TreeSet<String>();
+      for (int i = 0; i < 20000; i++) {
+        String w = Integer.toString(r.nextInt(30000), 36);
+        assertEquals(w, words.add(w), b.add(w));
+      }
+      assertEquals(words.size(), b.size());
+      for (int i = 0; i < 30000; i++) {
+        String w = Integer.toString(i, 36);
+        assertEquals(w, words.contains(w), b.contains(w));
+      }
+      assertEquals(new ArrayList<String>(words), all(b));
+
+      BPlusTree s = new BPlusTree(fanout);
+      for (int i = 0; i < 20000; i++) {
+        s.add(String.format("%06d", i));
+      }
+      assertEquals(20000, s.size());
+      assertTrue(s.contains("000000") && s.contains("019999"));
+      assertFalse(s.contains("020000"));
+    }
+  }
+
+  @Test
+  /** Test range scans over the linked leaves, with bounds in and out of the tree */
+  public void test30scan() {
+    BPlusTree b = new BPlusTree(4);
+    TreeSet<String> words = new TreeSet<String>();
+    for (int i = 0; i < 1000; i += 2) {
+      String w = String.format("%04d", i);
+      b.add(w);
+      words.add(w);
+    }
+    String[][] ranges = {{"0000", "0998"}, {"0100", "0200"}, {"0101", "0199"}, {"0500", "0500"},
+      {"0501", "0501"}, {"", "0010"}, {"0990", "zzzz"}, {"2000", "3000"}, {"0300", "0200"}};
+    for (String[] lr : ranges) {
+      List<String> got = new ArrayList<String>();
+      b.scan(lr[0], lr[1], got::add);
+      List<String> want = (lr[0].compareTo(lr[1]) > 0) ? new ArrayList<String>()
+        : new ArrayList<String>(words.subSet(lr[0], true, lr[1], true));
+      assertEquals(lr[0] + ".." + lr[1], want, got);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class ByteHashSetTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test duplicates, the empty key and keys longer than one hash word */
+  public void test00insert() {
+    ByteHashSet s = new ByteHashSet(1);
+    assertEquals(0, s.size());
+    assertFalse(s.contains(""));
+    String[] words = {"moo", "quack", "", "moo", "a somewhat longer line", "a somewhat longer linf", "quack"};
+    for (String w : words) {
+      s.insert(w);
+    }
+    assertEquals(5, s.size());
+    for (String w : words) {
+      assertTrue(w, s.contains(w));
+    }
+    assertFalse(s.contains("mo"));
+    assertFalse(s.contains("a somewhat longer lin"));
+  }
+
+  @Test
+  /** Test the ByteBuffer insert reads only the given slice */
+  public void test10slice() {
+    ByteHashSet s = new ByteHashSet();
+    ByteBuffer buf = ByteBuffer.wrap("xxmooxxmoo".getBytes(StandardCharsets.UTF_8));
+    s.insert(buf, 2, 3);
+    s.insert(buf, 7, 3);
+    s.insert(buf, 0, 2);
+    assertEquals(2, s.size());
+    assertTrue(s.contains("moo"));
+    assertTrue(s.contains("xx"));
+    assertFalse(s.contains("xxm"));
+  }
+
+  @Test
+  /** Test against HashSet through many resizes, with non-ASCII bytes */
+  public void test20random() {
+    ByteHashSet s = new ByteHashSet(1);
+    Set<String> expect = new HashSet<String>();
+    Random r = new Random(11);
+    for (int i = 0; i < 50000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int len = r.nextInt(12);
+      for (int j = 0; j < len; j++) {
+        sb.append("ab\u00e9z\u00ff".charAt(r.nextInt(5)));
+      }
+      String w = sb.toString();
+      assertEquals(expect.contains(w), s.contains(w));
+      byte[] b = w.getBytes(StandardCharsets.UTF_8);
+      assertEquals(expect.add(w), s.add(b, 0, b.length));
+      assertEquals(expect.size(), s.size());
+    }
+    for (String w : expect) {
+      assertTrue(s.contains(w));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class CompactAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static String inOrder(CompactAVL a, int n) {
+    if (n == CompactAVL.NIL) {
+      return "";
+    }
+    String result = inOrder(a, a.left(n))
+        + " " + a.key(n)
+        + " " + inOrder(a, a.right(n));
+    return result.trim().replaceAll(" +", " ");
+  }
+
+  private static String inOrder(AVL.Node n) {
+    if (n == null) {
+      return "";
+    }
+    String result = inOrder(n.left)
+        + " " + n.word
+        + " " + inOrder(n.right);
+    return result.trim().replaceAll(" +", " ");
+  }
+
+  @Test
+  /** Test inserting into an empty tree */
+  public void test00insertRoot() {
+    CompactAVL a = new CompactAVL();
+    assertEquals(CompactAVL.NIL, a.root());
+    assertEquals(0, a.getSize());
+    a.avlInsert("moo");
+    assertEquals(1, a.getSize());
+    assertEquals("moo", a.key(a.root()));
+    assertEquals(CompactAVL.NIL, a.parent(a.root()));
+  }
+
+  @Test
+  /** Test the same shape and contents as AVL, through several growths */
+  public void test10matchesAVL() {
+    CompactAVL c = new CompactAVL(1);
+    AVL a = new AVL();
+    String[] words = {"f", "d", "b", "a", "c", "e", "q", "n", "m", "l",
+      "o", "p", "x", "s", "r", "y", "z", "q", "a", "moo", "quack"};
+    for (String w : words) {
+      c.avlInsert(w);
+      a.avlInsert(w);
+      IndexedAVLChecks.check(c, c.root());
+      assertEquals(a.getSize(), c.getSize());
+      assertEquals(inOrder(a.root), inOrder(c, c.root()));
+      assertEquals(a.root.word, c.key(c.root()));
+    }
+    for (String w : words) {
+      assertEquals(w, c.key(c.search(w)));
+    }
+    assertEquals(CompactAVL.NIL, c.search("g"));
+  }
+
+  @Test
+  /** Test a larger tree stays balanced */
+  public void test20large() {
+    CompactAVL c = new CompactAVL();
+    for (int i = 0; i < 20000; i++) {
+      c.avlInsert(Integer.toString(i * 7919 % 10007));
+    }
+    assertEquals(10007, c.getSize());
+    IndexedAVLChecks.check(c, c.root());
+  }
+}
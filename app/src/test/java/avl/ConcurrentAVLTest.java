@@ -0,0 +1,132 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class ConcurrentAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* check order, parents, heights and balance of a quiescent tree;
+   * returns the number of nodes */
+  private static int check(ConcurrentAVL.Node n, String lo, String hi) {
+    if (n == null) {
+      return 0;
+    }
+    assertTrue(lo == null || lo.compareTo(n.key) < 0);
+    assertTrue(hi == null || hi.compareTo(n.key) > 0);
+    if (n.left != null) {
+      assertSame(n, n.left.parent);
+    }
+    if (n.right != null) {
+      assertSame(n, n.right.parent);
+    }
+    int hl = (n.left == null) ? 0 : n.left.height;
+    int hr = (n.right == null) ? 0 : n.right.height;
+    assertEquals(1 + Math.max(hl, hr), n.height);
+    assertTrue(Math.abs(hl - hr) <= 1);
+    return 1 + check(n.left, lo, n.key) + check(n.right, n.key, hi);
+  }
+
+  private static String key(int i) {
+    return String.format("%06d", i);
+  }
+
+  @Test
+  /** Test single-threaded inserts against TreeSet */
+  public void test00sequential() {
+    ConcurrentAVL a = new ConcurrentAVL();
+    TreeSet<String> expect = new TreeSet<String>();
+    Random r = new Random(1);
+    assertFalse(a.search("x"));
+    for (int i = 0; i < 5000; i++) {
+      String w = key(r.nextInt(3000));
+      assertEquals(expect.add(w), a.avlInsert(w));
+    }
+    assertEquals(expect.size(), a.getSize());
+    assertEquals(expect.size(), check(a.root(), null, null));
+    for (int i = 0; i < 3000; i++) {
+      assertEquals(expect.contains(key(i)), a.search(key(i)));
+    }
+  }
+
+  @Test
+  /** Test concurrent inserts and searches: every insert that has returned
+   * is visible to every later search, keys never inserted are never found,
+   * each key is reported inserted exactly once, and the final tree is a
+   * valid AVL tree */
+  public void test10stress() throws InterruptedException {
+    final int writers = 4, readers = 4, keys = 20000;
+    ConcurrentAVL a = new ConcurrentAVL();
+    // highest index each writer has finished inserting, in its own order
+    AtomicIntegerArray done = new AtomicIntegerArray(writers);
+    AtomicIntegerArray inserted = new AtomicIntegerArray(keys);
+    AtomicBoolean stop = new AtomicBoolean();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+
+    for (int t = 0; t < writers; t++) {
+      final int id = t;
+      threads.add(new Thread(() -> {
+        // every writer inserts every key, in its own stride order, so
+        // they race on the same slots
+        for (int i = 0; i < keys; i++) {
+          int k = (i * 7919 + id * 4999) % keys;
+          if (a.avlInsert(key(2 * k))) {
+            inserted.incrementAndGet(k);
+          }
+          done.set(id, i);
+        }
+      }));
+    }
+    for (int t = 0; t < readers; t++) {
+      final long seed = t;
+      threads.add(new Thread(() -> {
+        Random r = new Random(seed);
+        try {
+          while (!stop.get()) {
+            int id = r.nextInt(writers);
+            int upTo = done.get(id);
+            int i = r.nextInt(upTo + 1);
+            int k = (i * 7919 + id * 4999) % keys;
+            if (upTo > 0) {
+              assertTrue(a.search(key(2 * k)));
+            }
+            assertFalse(a.search(key(2 * k + 1)));
+          }
+        } catch (Throwable exc) {
+          failure.compareAndSet(null, exc);
+        }
+      }));
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (int t = 0; t < writers; t++) {
+      threads.get(t).join();
+    }
+    stop.set(true);
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    for (int k = 0; k < keys; k++) {
+      assertEquals(1, inserted.get(k));
+    }
+    assertEquals(keys, a.getSize());
+    assertEquals(keys, check(a.root(), null, null));
+  }
+}
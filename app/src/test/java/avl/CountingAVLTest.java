@@ -0,0 +1,93 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class CountingAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test duplicates bump the count without adding a node */
+  public void test00counts() {
+    CountingAVL a = new CountingAVL();
+    assertEquals(0, a.count("moo"));
+    assertEquals(1, a.add("moo"));
+    assertEquals(2, a.add("moo"));
+    assertEquals(1, a.add("quack"));
+    a.insert("moo");
+    assertEquals(3, a.count("moo"));
+    assertEquals(1, a.count("quack"));
+    assertEquals(0, a.count("mo"));
+    assertEquals(2, a.size());
+    assertEquals(4, a.total());
+    assertTrue(a.contains("quack"));
+    assertEquals(CountingAVL.NIL, a.search("baa"));
+    assertEquals(3, a.count(a.search("moo")));
+  }
+
+  @Test
+  /** Test against TreeMap in random and sorted order, checking balance */
+  public void test10random() {
+    Random r = new Random(24);
+    CountingAVL a = new CountingAVL();
+    TreeMap<String, Long> counts = new TreeMap<String, Long>();
+    for (int i = 0; i < 50000; i++) {
+      String w = Integer.toString((int) Math.abs(r.nextGaussian() * 2000), 36);
+      long c = counts.merge(w, 1L, Long::sum);
+      assertEquals(w, c, a.add(w));
+    }
+    IndexedAVLChecks.check(a, a.root());
+    assertEquals(counts.size(), a.size());
+    assertEquals(50000, a.total());
+    List<String> order = new ArrayList<String>();
+    a.forEach((w, c) -> {
+      order.add(w);
+      assertEquals(w, (long) counts.get(w), c);
+    });
+    assertEquals(new ArrayList<String>(counts.keySet()), order);
+
+    CountingAVL s = new CountingAVL();
+    for (int i = 0; i < 5000; i++) {
+      s.add(String.format("%05d", i));
+      s.add(String.format("%05d", i / 2));
+    }
+    IndexedAVLChecks.check(s, s.root());
+    assertEquals(5000, s.size());
+    assertEquals(3, s.count("00001"));
+    assertEquals(1, s.count("04999"));
+  }
+
+  @Test
+  /** Test topK against a full sort of the counts, with ties broken by word */
+  public void test20topK() {
+    CountingAVL a = new CountingAVL();
+    for (String w : "d c b a c b a c a b e a".split(" ")) {
+      a.add(w);
+    }
+    List<CountingAVL.Count> top = Unique.topK(a, 3);
+    assertEquals("[a(4), b(3), c(3)]", top.toString());
+    assertEquals("[a(4)]", Unique.topK(a, 1).toString());
+    assertEquals(0, Unique.topK(a, 0).size());
+    assertEquals("[a(4), b(3), c(3), d(1), e(1)]", Unique.topK(a, 100).toString());
+    assertEquals(0, Unique.topK(new CountingAVL(), 5).size());
+
+    Random r = new Random(7);
+    CountingAVL big = new CountingAVL();
+    for (int i = 0; i < 20000; i++) {
+      big.add(Integer.toString(r.nextInt(500)));
+    }
+    List<CountingAVL.Count> all = new ArrayList<CountingAVL.Count>();
+    big.forEach((w, c) -> all.add(new CountingAVL.Count(w, c)));
+    all.sort((x, y) -> (x.count != y.count) ? Long.compare(y.count, x.count) : x.word.compareTo(y.word));
+    assertEquals(all.subList(0, 25), Unique.topK(big, 25));
+  }
+}
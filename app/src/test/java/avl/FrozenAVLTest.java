@@ -0,0 +1,86 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class FrozenAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test freezing empty and tiny trees */
+  public void test00small() {
+    FrozenAVL f = new AVL().freeze();
+    assertEquals(0, f.size());
+    assertFalse(f.contains(""));
+    assertFalse(f.contains("moo"));
+
+    AVL a = new AVL();
+    a.avlInsert("moo");
+    f = a.freeze();
+    assertTrue(f.contains("moo"));
+    assertFalse(f.contains("mo"));
+    assertFalse(f.contains("moo\u0000"));
+    assertFalse(f.contains("zzz"));
+    assertEquals("moo", f.key(f.search("moo")));
+  }
+
+  @Test
+  /** Test words sharing their first four chars, \0 padding and surrogates */
+  public void test10prefixTies() {
+    String[] words = {"", "a", "ab", "ab\u0000", "ab\u0000\u0000\u0000", "abcd", "abcde", "abcdf",
+      "abcd\u0000", "\uffff", "\ud83d\ude00x", "\ue000", "moo", "quack"};
+    AVL a = new AVL();
+    for (String w : words) {
+      a.avlInsert(w);
+    }
+    FrozenAVL f = a.freeze();
+    assertEquals(words.length, f.size());
+    for (String w : words) {
+      assertTrue(w, f.contains(w));
+      assertEquals(w, f.key(f.search(w)));
+    }
+    for (String w : new String[] {"ab\u0000\u0000", "abc", "abcdg", "abcd\u0000\u0000", "\ud83d", "b"}) {
+      assertFalse(w, f.contains(w));
+    }
+  }
+
+  @Test
+  /** Test against TreeSet for every tree size up to 300 and a larger tree */
+  public void test20random() {
+    Random r = new Random(12);
+    for (int size = 0; size <= 300; size++) {
+      TreeSet<String> words = new TreeSet<String>();
+      AVL a = new AVL();
+      while (words.size() < size) {
+        String w = Integer.toString(r.nextInt(1000));
+        words.add(w);
+        a.avlInsert(w);
+      }
+      FrozenAVL f = a.freeze();
+      for (int i = 0; i < 1000; i++) {
+        String w = Integer.toString(i);
+        assertEquals(w, words.contains(w), f.contains(w));
+      }
+    }
+    AVL a = new AVL();
+    TreeSet<String> words = new TreeSet<String>();
+    for (int i = 0; i < 50000; i++) {
+      String w = Integer.toString(r.nextInt(100000), 36);
+      a.avlInsert(w);
+      words.add(w);
+    }
+    FrozenAVL f = a.freeze();
+    assertEquals(words.size(), f.size());
+    for (String w : words) {
+      assertTrue(f.contains(w));
+      assertFalse(f.contains(w + "!"));
+    }
+  }
+}
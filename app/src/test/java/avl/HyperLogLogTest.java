@@ -0,0 +1,76 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class HyperLogLogTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* assert the sketch's estimate is within 4 standard errors of n */
+  private static void checkNear(long n, HyperLogLog h) {
+    long e = h.estimate();
+    assertTrue(e + " for " + n, Math.abs(e - n) <= 4 * h.standardError() * n);
+  }
+
+  @Test
+  /** Test small counts, where linear counting makes the estimate near exact */
+  public void test00small() {
+    HyperLogLog h = new HyperLogLog();
+    assertEquals(0, h.estimate());
+    for (int i = 0; i < 3; i++) {
+      h.add("moo");
+      h.add("quack");
+      h.add("");
+    }
+    assertEquals(3, h.estimate());
+  }
+
+  @Test
+  /** Test large counts at several precisions, with each line added twice */
+  public void test10large() {
+    for (int p : new int[] {HyperLogLog.MIN_PRECISION + 4, 12, 14}) {
+      HyperLogLog h = new HyperLogLog(p);
+      for (int i = 0; i < 200000; i++) {
+        h.add("line " + i);
+        h.add("line " + i);
+      }
+      checkNear(200000, h);
+    }
+  }
+
+  @Test
+  /** Test merging sketches of overlapping halves counts their union */
+  public void test20merge() {
+    HyperLogLog a = new HyperLogLog(), b = new HyperLogLog(), all = new HyperLogLog();
+    for (int i = 0; i < 60000; i++) {
+      a.add("x" + i);
+      all.add("x" + i);
+    }
+    for (int i = 40000; i < 100000; i++) {
+      b.add("x" + i);
+      all.add("x" + i);
+    }
+    a.merge(b);
+    assertEquals(all.estimate(), a.estimate());
+    checkNear(100000, a);
+  }
+
+  @Test
+  /** Test bad precisions and merges across precisions are rejected */
+  public void test30precision() {
+    try {
+      new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+      fail();
+    } catch (IllegalArgumentException exc) {
+    }
+    try {
+      new HyperLogLog(12).merge(new HyperLogLog(13));
+      fail();
+    } catch (IllegalArgumentException exc) {
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+/** Structure checks shared by the tests of the trees built on IndexedAVL */
+final class IndexedAVLChecks {
+
+  private IndexedAVLChecks() {
+  }
+
+  /* check parent links, heights and balance; returns the height of n */
+  static int check(IndexedAVL a, int n) {
+    if (n == IndexedAVL.NIL) {
+      return -1;
+    }
+    if (a.left(n) != IndexedAVL.NIL) {
+      assertEquals(n, a.parent(a.left(n)));
+    }
+    if (a.right(n) != IndexedAVL.NIL) {
+      assertEquals(n, a.parent(a.right(n)));
+    }
+    int hl = check(a, a.left(n));
+    int hr = check(a, a.right(n));
+    assertEquals(1 + Math.max(hl, hr), a.height(n));
+    assertTrue(Math.abs(hr - hl) <= 1);
+    return a.height(n);
+  }
+}
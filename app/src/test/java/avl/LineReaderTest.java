@@ -0,0 +1,90 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class LineReaderTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static List<String> read(String contents, int window) throws IOException {
+    Path f = Files.createTempFile("linereader", ".txt");
+    try {
+      Files.write(f, contents.getBytes(StandardCharsets.UTF_8));
+      List<String> lines = new ArrayList<String>();
+      try (LineReader r = new LineReader(f, window)) {
+        long n = r.forEach((buf, off, len) -> {
+          byte[] b = new byte[len];
+          buf.get(off, b, 0, len);
+          lines.add(new String(b, StandardCharsets.UTF_8));
+        });
+        assertEquals(lines.size(), n);
+      }
+      return lines;
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @Test
+  /** Test the same line splitting as Scanner.nextLine */
+  public void test00lines() throws IOException {
+    assertEquals(Arrays.asList(), read("", 64));
+    assertEquals(Arrays.asList("a"), read("a", 64));
+    assertEquals(Arrays.asList("a"), read("a\n", 64));
+    assertEquals(Arrays.asList("a", "", "bc"), read("a\n\nbc\n", 64));
+    assertEquals(Arrays.asList("a", "b"), read("a\r\nb", 64));
+    assertEquals(Arrays.asList("h\u00e9llo"), read("h\u00e9llo\n", 64));
+  }
+
+  @Test
+  /** Test lines straddling and exceeding the mapping window */
+  public void test10windows() throws IOException {
+    String s = "abc\ndefgh\nij\nklmnopqrstuvwxyz\nz";
+    List<String> expect = Arrays.asList("abc", "defgh", "ij", "klmnopqrstuvwxyz", "z");
+    for (int w = 1; w < 40; w++) {
+      assertEquals(expect, read(s, w));
+    }
+  }
+
+  @Test
+  /** Test split ranges start on lines and cover every line once */
+  public void test20split() throws IOException {
+    Path f = Files.createTempFile("linereader", ".txt");
+    try {
+      String s = "abc\ndefgh\nij\nklmnopqrstuvwxyz\nz";
+      Files.write(f, s.getBytes(StandardCharsets.UTF_8));
+      try (LineReader r = new LineReader(f, 8)) {
+        for (int n = 1; n < 12; n++) {
+          long[] bounds = r.split(n);
+          assertEquals(0, bounds[0]);
+          assertEquals(s.length(), bounds[bounds.length - 1]);
+          List<String> lines = new ArrayList<String>();
+          for (int i = 0; i + 1 < bounds.length; i++) {
+            assertTrue(bounds[i] < bounds[i + 1]);
+            assertTrue(bounds[i] == 0 || s.charAt((int) bounds[i] - 1) == '\n');
+            r.forEach(bounds[i], bounds[i + 1], (buf, off, len) -> {
+              byte[] b = new byte[len];
+              buf.get(off, b, 0, len);
+              lines.add(new String(b, StandardCharsets.UTF_8));
+            });
+          }
+          assertEquals(Arrays.asList(s.split("\n")), lines);
+        }
+      }
+    } finally {
+      Files.delete(f);
+    }
+  }
+}
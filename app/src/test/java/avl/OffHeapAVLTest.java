@@ -0,0 +1,85 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class OffHeapAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* check parent links, heights and balance; returns the height of n */
+  private static int check(OffHeapAVL a, int n) {
+    if (n == OffHeapAVL.NIL) {
+      return -1;
+    }
+    if (a.left(n) != OffHeapAVL.NIL) {
+      assertEquals(n, a.parent(a.left(n)));
+      assertTrue(a.key(a.left(n)).compareTo(a.key(n)) < 0);
+    }
+    if (a.right(n) != OffHeapAVL.NIL) {
+      assertEquals(n, a.parent(a.right(n)));
+      assertTrue(a.key(a.right(n)).compareTo(a.key(n)) > 0);
+    }
+    int hl = check(a, a.left(n));
+    int hr = check(a, a.right(n));
+    assertEquals(1 + Math.max(hl, hr), a.height(n));
+    assertTrue(Math.abs(hr - hl) <= 1);
+    return a.height(n);
+  }
+
+  @Test
+  /** Test the same shape as CompactAVL, across many tiny pages */
+  public void test00matchesCompact() {
+    try (OffHeapAVL o = new OffHeapAVL(2, 6)) {
+      CompactAVL c = new CompactAVL();
+      for (int i = 0; i < 2000; i++) {
+        String w = "key" + (i * 31 % 1009);
+        o.avlInsert(w);
+        c.avlInsert(w);
+      }
+      assertEquals(1009, o.getSize());
+      assertEquals(c.getSize(), o.getSize());
+      assertEquals(c.key(c.root()), o.key(o.root()));
+      check(o, o.root());
+      assertEquals("key17", o.key(o.search("key17")));
+      assertEquals(OffHeapAVL.NIL, o.search("key1009"));
+    }
+  }
+
+  @Test
+  /** Test keys longer than a word and keys that are prefixes of others */
+  public void test10longKeys() {
+    try (OffHeapAVL o = new OffHeapAVL(4, 8)) {
+      o.avlInsert("abcdefghijklmnop");
+      o.avlInsert("abcdefghijklmnoq");
+      o.avlInsert("abcdefgh");
+      o.avlInsert("abcdefghi");
+      o.avlInsert("abcdefghijklmnop");
+      o.avlInsert("");
+      assertEquals(5, o.getSize());
+      check(o, o.root());
+      assertNotEquals(OffHeapAVL.NIL, o.search(""));
+      assertEquals(OffHeapAVL.NIL, o.search("abcdefghij"));
+    }
+  }
+
+  @Test
+  /** Test that a closed tree refuses further use */
+  public void test20close() {
+    OffHeapAVL o = new OffHeapAVL();
+    o.avlInsert("moo");
+    assertTrue(o.footprint() > 0);
+    o.close();
+    o.close();
+    assertEquals(0, o.getSize());
+    try {
+      o.avlInsert("quack");
+      fail();
+    } catch (IllegalStateException exc) {
+      // expected
+    }
+  }
+}
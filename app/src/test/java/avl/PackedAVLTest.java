@@ -0,0 +1,99 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class PackedAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* check the shapes of the two trees match node for node */
+  private static void sameShape(PackedAVL p, int n, CompactAVL c, int m) {
+    if (n == PackedAVL.NIL || m == CompactAVL.NIL) {
+      assertEquals(n == PackedAVL.NIL, m == CompactAVL.NIL);
+      return;
+    }
+    assertEquals(c.key(m), p.key(n));
+    sameShape(p, p.left(n), c, c.left(m));
+    sameShape(p, p.right(n), c, c.right(m));
+  }
+
+  @Test
+  /** Test packed keys order by unsigned bytes, as in CompactAVL, and that
+   * keys differing only in trailing zero bytes stay distinct */
+  public void test00order() {
+    PackedAVL p = new PackedAVL(1);
+    CompactAVL c = new CompactAVL(1);
+    String[] words = {"moo", "", "ab", "ab\u0000", "ab\u0000\u0000", "\u00ff", "\u00e9t\u00e9",
+      "zzzzzzzz", "aaaaaaaa", "a", "moo", "ab"};
+    for (String w : words) {
+      p.avlInsert(w);
+      c.avlInsert(w);
+      IndexedAVLChecks.check(p, p.root());
+      assertEquals(c.getSize(), p.getSize());
+      sameShape(p, p.root(), c, c.root());
+    }
+    for (String w : words) {
+      assertTrue(w, p.contains(w));
+    }
+    assertFalse(p.contains("ab\u0000\u0000\u0000"));
+    assertFalse(p.contains("mo"));
+    assertEquals(0, p.overflowSize());
+  }
+
+  @Test
+  /** Test keys over 8 bytes fall back to the overflow tree */
+  public void test10overflow() {
+    PackedAVL p = new PackedAVL();
+    p.insert("12345678");
+    p.insert("123456789");
+    p.insert("\u00e9\u00e9\u00e9\u00e9\u00e9"); // 10 UTF-8 bytes
+    p.insert("123456789");
+    assertEquals(3, p.size());
+    assertEquals(2, p.overflowSize());
+    assertTrue(p.contains("123456789"));
+    assertTrue(p.contains("\u00e9\u00e9\u00e9\u00e9\u00e9"));
+    assertFalse(p.contains("1234567890"));
+  }
+
+  @Test
+  /** Test the ByteBuffer insert agrees with the String one, in either byte order */
+  public void test20buffer() {
+    byte[] b = "xx12345678yy".getBytes(StandardCharsets.UTF_8);
+    for (ByteOrder o : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      ByteBuffer buf = ByteBuffer.wrap(b).order(o);
+      assertEquals(PackedAVL.pack(ByteBuffer.wrap("12345678".getBytes(StandardCharsets.UTF_8)), 0, 8),
+          PackedAVL.pack(buf, 2, 8));
+      PackedAVL p = new PackedAVL();
+      p.insert(buf, 2, 8);
+      p.insert(buf, 2, 3);
+      assertTrue(p.contains("12345678"));
+      assertTrue(p.contains("123"));
+      assertEquals(2, p.size());
+    }
+  }
+
+  @Test
+  /** Test a larger random tree matches CompactAVL */
+  public void test30large() {
+    PackedAVL p = new PackedAVL();
+    CompactAVL c = new CompactAVL();
+    Random r = new Random(3);
+    for (int i = 0; i < 20000; i++) {
+      String w = Integer.toString(r.nextInt(30000), 36);
+      p.avlInsert(w);
+      c.avlInsert(w);
+    }
+    assertEquals(c.getSize(), p.getSize());
+    IndexedAVLChecks.check(p, p.root());
+    sameShape(p, p.root(), c, c.root());
+  }
+}
@@ -0,0 +1,70 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class PersistentAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static String preOrder(PersistentAVL.Node n) {
+    if (n == null) {
+      return "";
+    }
+    String result = n.word
+        + " " + preOrder(n.left)
+        + " " + preOrder(n.right);
+    return result.trim().replaceAll(" +", " ");
+  }
+
+  private static String preOrder(AVL.Node n) {
+    if (n == null) {
+      return "";
+    }
+    String result = n.word
+        + " " + preOrder(n.left)
+        + " " + preOrder(n.right);
+    return result.trim().replaceAll(" +", " ");
+  }
+
+  @Test
+  /** Test the same shapes as AVL.avlInsert */
+  public void test00matchesAVL() {
+    PersistentAVL p = PersistentAVL.EMPTY;
+    AVL a = new AVL();
+    for (String w : "a b c d e f q x y z m n l o s r q p".split(" ")) {
+      p = p.insert(w);
+      a.avlInsert(w);
+      assertEquals(preOrder(a.root), preOrder(p.root()));
+      assertEquals(a.getSize(), p.getSize());
+    }
+    assertTrue(p.search("q"));
+    assertFalse(p.search("g"));
+  }
+
+  @Test
+  /** Test old versions are unchanged and untouched subtrees are shared */
+  public void test10snapshots() {
+    PersistentAVL p = PersistentAVL.EMPTY;
+    for (String w : "m f t c h p w".split(" ")) {
+      p = p.insert(w);
+    }
+    PersistentAVL snap = p;
+    String before = preOrder(snap.root());
+
+    PersistentAVL q = p.insert("a").insert("b");
+    assertEquals(before, preOrder(snap.root()));
+    assertEquals(7, snap.getSize());
+    assertEquals(9, q.getSize());
+    assertFalse(snap.search("a"));
+    assertTrue(q.search("a"));
+    // the right half of the tree was not on the insertion path
+    assertSame(snap.root().right, q.root().right);
+    // inserting a word already present returns the same tree
+    assertSame(q, q.insert("h"));
+    assertEquals(0, PersistentAVL.EMPTY.getSize());
+  }
+}
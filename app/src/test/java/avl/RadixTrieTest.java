@@ -0,0 +1,65 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class RadixTrieTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test edge splits, prefixes of other keys and the empty key */
+  public void test00insert() {
+    RadixTrie t = new RadixTrie();
+    assertEquals(0, t.size());
+    assertFalse(t.contains(""));
+    t.insert("romane");
+    t.insert("romanus");
+    t.insert("romulus");
+    t.insert("rubens");
+    t.insert("rom");
+    t.insert("romanus");
+    t.insert("ruber");
+    t.insert("r");
+    assertEquals(7, t.size());
+    for (String w : new String[] {"romane", "romanus", "romulus", "rubens", "rom", "ruber", "r"}) {
+      assertTrue(w, t.contains(w));
+    }
+    for (String w : new String[] {"", "ro", "roman", "romanes", "rubicon", "s", "rubensx"}) {
+      assertFalse(w, t.contains(w));
+    }
+    t.insert("");
+    assertTrue(t.contains(""));
+    assertEquals(8, t.size());
+  }
+
+  @Test
+  /** Test against HashSet with random short keys and non-ASCII bytes */
+  public void test10random() {
+    RadixTrie t = new RadixTrie();
+    Set<String> expect = new HashSet<String>();
+    Random r = new Random(5);
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int len = r.nextInt(6);
+      for (int j = 0; j < len; j++) {
+        sb.append("ab\u00e9z\u00ff".charAt(r.nextInt(5)));
+      }
+      String w = sb.toString();
+      assertEquals(expect.contains(w), t.contains(w));
+      t.insert(w);
+      expect.add(w);
+      assertEquals(expect.size(), t.size());
+    }
+    for (String w : expect) {
+      assertTrue(t.contains(w));
+    }
+  }
+}
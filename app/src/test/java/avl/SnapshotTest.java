@@ -0,0 +1,195 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class SnapshotTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static List<String> words(AVL a) {
+    List<String> out = new ArrayList<String>();
+    for (String w : a) {
+      out.add(w);
+    }
+    return out;
+  }
+
+  /* check heights, sizes and parent links; returns the height of n */
+  private static int check(AVL.Node n) {
+    if (n == null) {
+      return -1;
+    }
+    if (n.left != null) {
+      assertEquals(n, n.left.parent);
+    }
+    if (n.right != null) {
+      assertEquals(n, n.right.parent);
+    }
+    int hl = check(n.left), hr = check(n.right);
+    assertTrue(Math.abs(hr - hl) <= 1);
+    assertEquals(1 + Math.max(hl, hr), n.height);
+    assertEquals(1 + (n.left == null ? 0 : n.left.size) + (n.right == null ? 0 : n.right.size), n.size);
+    return n.height;
+  }
+
+  @Test
+  /** Test a round trip keeps every word, including empty, long and non-ASCII ones */
+  public void test00roundTrip() throws IOException {
+    Path f = Files.createTempFile("avl", ".snap");
+    try {
+      AVL a = new AVL();
+      char[] big = new char[70000];
+      Arrays.fill(big, 'q');
+      for (String w : new String[] {"moo", "", "\u00e9t\u00e9", new String(big), "quack", "a"}) {
+        a.avlInsert(w);
+      }
+      for (int i = 0; i < 3000; i++) {
+        a.avlInsert(Integer.toString(i * 7919 % 10007));
+      }
+      a.save(f);
+      AVL b = AVL.load(f);
+      assertEquals(a.getSize(), b.getSize());
+      assertEquals(words(a), words(b));
+      assertEquals(null, b.root.parent);
+      check(b.root);
+
+      // saving over an existing snapshot replaces it
+      new AVL().save(f);
+      assertEquals(0, AVL.load(f).getSize());
+    } finally {
+      Files.deleteIfExists(f);
+    }
+  }
+
+  @Test
+  /** Test damaged files are rejected */
+  public void test10corrupt() throws IOException {
+    Path f = Files.createTempFile("avl", ".snap");
+    try {
+      AVL a = new AVL();
+      for (String w : "m f t c h p w".split(" ")) {
+        a.avlInsert(w);
+      }
+      a.save(f);
+      byte[] good = Files.readAllBytes(f);
+
+      byte[] bad = good.clone();
+      bad[bad.length - 1] ^= 1;
+      assertRejected(f, bad, "checksum");
+
+      bad = good.clone();
+      bad[7] = 3;
+      assertRejected(f, bad, "version");
+
+      bad = good.clone();
+      bad[0] = 'X';
+      assertRejected(f, bad, "not an AVL snapshot");
+
+      assertRejected(f, Arrays.copyOf(good, good.length - 1), "truncated");
+    } finally {
+      Files.deleteIfExists(f);
+    }
+  }
+
+  @Test
+  /** Test a changed key count is caught by the checksum, and by the
+   * leftover bytes check even when the checksum is made to match */
+  public void test20corruptCount() throws IOException {
+    Path f = Files.createTempFile("avl", ".snap");
+    try {
+      AVL a = new AVL();
+      for (int i = 0; i < 1000; i++) {
+        a.avlInsert(Integer.toString(i));
+      }
+      a.save(f);
+      byte[] bad = Files.readAllBytes(f);
+      ByteBuffer.wrap(bad).putInt(8, 100);
+      assertRejected(f, bad, "checksum");
+
+      reseal(bad);
+      assertRejected(f, bad, "after the last key");
+    } finally {
+      Files.deleteIfExists(f);
+    }
+  }
+
+  @Test
+  /** Test a key count the blob can't hold and a varint that overflows
+   * to a negative length are rejected as IOExceptions */
+  public void test30corruptLength() throws IOException {
+    Path f = Files.createTempFile("avl", ".snap");
+    try {
+      new AVL().save(f);
+      byte[] empty = Files.readAllBytes(f);
+      byte[] bad = Arrays.copyOf(empty, Snapshot.HEADER + 2);
+      ByteBuffer.wrap(bad).putInt(8, Integer.MAX_VALUE).putLong(12, 2);
+      reseal(bad);
+      assertRejected(f, bad, "keys in 2 bytes");
+
+      bad = Arrays.copyOf(empty, Snapshot.HEADER + 5);
+      ByteBuffer.wrap(bad).putInt(8, 1).putLong(12, 5).position(Snapshot.HEADER)
+        .put(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f });
+      reseal(bad);
+      assertRejected(f, bad, "bad key length");
+    } finally {
+      Files.deleteIfExists(f);
+    }
+  }
+
+  @Test
+  /** Test a failed write leaves no temporary file behind */
+  public void test40failedWrite() throws IOException {
+    Path dir = Files.createTempDirectory("avl");
+    Path f = dir.resolve("snap");
+    Path tmp = dir.resolve("snap.tmp");
+    try {
+      // a non-empty directory can't be replaced by the move
+      Files.createDirectory(f);
+      Files.createFile(f.resolve("x"));
+      AVL a = new AVL();
+      a.avlInsert("moo");
+      try {
+        a.save(f);
+        fail("saved over a directory");
+      } catch (IOException exc) {
+      }
+      assertFalse(Files.exists(tmp));
+    } finally {
+      Files.deleteIfExists(f.resolve("x"));
+      Files.deleteIfExists(f);
+      Files.deleteIfExists(tmp);
+      Files.delete(dir);
+    }
+  }
+
+  /* recompute the checksum of a snapshot whose header or blob was edited */
+  private static void reseal(byte[] snap) {
+    CRC32C crc = new CRC32C();
+    crc.update(snap, Snapshot.HEADER, snap.length - Snapshot.HEADER);
+    crc.update(snap, 8, 12);
+    ByteBuffer.wrap(snap).putInt(20, (int) crc.getValue());
+  }
+
+  private static void assertRejected(Path f, byte[] contents, String why) throws IOException {
+    Files.write(f, contents);
+    try {
+      Snapshot.read(f);
+      fail(why);
+    } catch (IOException exc) {
+      assertTrue(exc.getMessage(), exc.getMessage().contains(why));
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class UniqueTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static InputStream bytes(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  /** Test stream splits lines like LineReader: CRLF, blank and unterminated lines */
+  public void test00stream() throws IOException {
+    ByteArrayOutputStream report = new ByteArrayOutputStream();
+    String in = "moo\r\nquack\n\nmoo\nquack\r\nmoo\r\n\r\nbaa";
+    assertEquals(4, Unique.streamUnique(bytes(in), new AVL(), 1000, new PrintStream(report)));
+    assertTrue(report.toString().contains("done: 8 lines, 4 unique"));
+    assertEquals(4, Unique.streamUnique(bytes(in), new ByteHashSet(), 1000, new PrintStream(report)));
+    assertEquals(4, Unique.streamUnique(bytes(in), Unique.newSet(Unique.STREAM_ENGINE), 1000, new PrintStream(report)));
+  }
+
+  @Test
+  /** Test lines spanning reads and longer than the read buffer */
+  public void test10longLines() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      sb.append(i % 300).append('\n');
+    }
+    char[] big = new char[200000];
+    Arrays.fill(big, 'x');
+    sb.append(big).append('\n').append(big).append("\n7\n");
+    AVL seen = new AVL();
+    assertEquals(301, Unique.streamUnique(bytes(sb.toString()), seen, 1000, new PrintStream(new ByteArrayOutputStream())));
+    assertTrue(seen.contains(new String(big)));
+  }
+
+  @Test
+  /** Test progress is reported while a slow stream is still being read */
+  public void test20report() throws IOException {
+    InputStream slow = new InputStream() {
+      private int left = 5;
+
+      public int read() {
+        throw new UnsupportedOperationException();
+      }
+
+      public int read(byte[] b, int off, int len) {
+        if (left-- == 0) {
+          return -1;
+        }
+        try {
+          Thread.sleep(60);
+        } catch (InterruptedException exc) {
+        }
+        b[off] = (byte) ('a' + left);
+        b[off + 1] = '\n';
+        return 2;
+      }
+    };
+    ByteArrayOutputStream report = new ByteArrayOutputStream();
+    assertEquals(5, Unique.streamUnique(slow, new AVL(), 20, new PrintStream(report, true)));
+    String[] out = report.toString().split("\n");
+    assertTrue(out.length > 2);
+    assertTrue(out[0], out[0].matches("\\[[0-9.]+s\\] [0-9]+ lines, [0-9]+ unique, [0-9]+ lines/s"));
+  }
+
+  @Test
+  /** Test topk counts the lines of a file, CRLF and unterminated lines included */
+  public void test30topK() throws IOException {
+    Path f = Files.createTempFile("topk", ".txt");
+    try {
+      Files.write(f, "moo\r\nquack\nmoo\nbaa\r\nquack\nmoo".getBytes(StandardCharsets.UTF_8));
+      assertEquals("[moo(3), quack(2)]", Unique.topK(f, 2).toString());
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  private static Path temp(String contents) throws IOException {
+    Path f = Files.createTempFile("unique", ".txt");
+    Files.write(f, contents.getBytes(StandardCharsets.UTF_8));
+    return f;
+  }
+
+  @Test
+  /** Test parallel agrees with avl for any thread count, including more threads than lines */
+  public void test40parallel() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      sb.append(i % 97).append((i % 3 == 0) ? "\r\n" : "\n");
+    }
+    String[] inputs = { "", "moo", "moo\r\nquack\nmoo\r\n\r\nbaa", "a\nb\na\n", sb.toString(), sb + "last" };
+    for (String in : inputs) {
+      Path f = temp(in);
+      try {
+        int expected = Unique.avlUnique(f);
+        for (int n : new int[] { 1, 2, 3, 4, 7, 16 }) {
+          assertEquals(in + " on " + n, expected, Unique.parallelUnique(f, n));
+        }
+      } finally {
+        Files.delete(f);
+      }
+    }
+  }
+
+  @Test
+  /** Test mergeDistinct keeps one copy of shared strings and handles empty and disjoint inputs */
+  public void test50mergeDistinct() {
+    String[] none = {};
+    assertArrayEquals(new String[] { "a", "b", "c", "d" }, Unique.mergeDistinct(new String[] { "a", "b", "c" }, new String[] { "b", "c", "d" }));
+    assertArrayEquals(new String[] { "a", "b" }, Unique.mergeDistinct(new String[] { "a", "b" }, new String[] { "a", "b" }));
+    assertArrayEquals(none, Unique.mergeDistinct(none, none));
+    assertArrayEquals(new String[] { "a" }, Unique.mergeDistinct(none, new String[] { "a" }));
+    assertArrayEquals(new String[] { "a" }, Unique.mergeDistinct(new String[] { "a" }, none));
+    assertArrayEquals(new String[] { "a", "b", "c", "d" }, Unique.mergeDistinct(new String[] { "a", "c" }, new String[] { "b", "d" }));
+    assertArrayEquals(new String[] { "a", "b", "c", "d" }, Unique.mergeDistinct(new String[] { "c", "d" }, new String[] { "a", "b" }));
+  }
+
+  @Test
+  /** Test diff counts the lines only in the first file, only in the second and in both */
+  public void test60diff() throws IOException {
+    Path a = temp("moo\nquack\nbaa\nmoo\n");
+    Path b = temp("baa\r\nneigh\noink\nmoo");
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Unique.diff(a, b, new PrintStream(out, true));
+      String nl = System.lineSeparator();
+      assertEquals("Only in " + a + ": 1" + nl + "Only in " + b + ": 2" + nl + "In both: 2" + nl, out.toString());
+    } finally {
+      Files.delete(a);
+      Files.delete(b);
+    }
+  }
+
+  @Test
+  /** Test approx gives the same estimate for any thread count as one sketch over the whole file */
+  public void test70approx() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      sb.append(i * 7919 % 15000).append((i % 5 == 0) ? "\r\n" : "\n");
+    }
+    Path f = temp(sb.toString());
+    try {
+      HyperLogLog one = new HyperLogLog(10);
+      try (LineReader r = new LineReader(f)) {
+        r.forEach(one::add);
+      }
+      for (int n = 1; n <= 4; n++) {
+        assertEquals("on " + n, one.estimate(), Unique.approxUnique(f, 10, n).estimate());
+      }
+    } finally {
+      Files.delete(f);
+    }
+  }
+}